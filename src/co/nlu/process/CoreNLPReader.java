@@ -0,0 +1,222 @@
+package co.nlu.process;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import co.nlu.models.Dep;
+import co.nlu.models.Dependent;
+import co.nlu.models.Governor;
+import co.nlu.models.Sentence;
+import co.nlu.models.Token;
+
+/**
+ * Reads CoreNLP XML output one sentence at a time, in a single forward pass
+ * over the stream, building the same Sentences, Tokens and Deps as
+ * Processor.parseSentences(XMLElement) without building a document tree.
+ * Only the sentence being read is held in memory, so documents of any size
+ * can be read. The underlying Reader or InputStream is not closed.
+ *
+ * <pre>
+ * CoreNLPReader in = new CoreNLPReader(reader);
+ * try {
+ *     for (Sentence s = in.next(); s != null; s = in.next()) {
+ *         ...
+ *     }
+ * } finally {
+ *     in.close();
+ * }
+ * </pre>
+ */
+public class CoreNLPReader {
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+	static {
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private final XMLStreamReader xml;
+	// names of the open elements outside a sentence
+	private final List<String> path = new ArrayList<String>();
+
+	public CoreNLPReader(Reader in) throws XMLStreamException {
+		synchronized (FACTORY) {
+			xml = FACTORY.createXMLStreamReader(in);
+		}
+	}
+
+	/**
+	 * Read from bytes, in the encoding the XML declaration gives.
+	 */
+	public CoreNLPReader(InputStream in) throws XMLStreamException {
+		synchronized (FACTORY) {
+			xml = FACTORY.createXMLStreamReader(in);
+		}
+	}
+
+	/**
+	 * Read the rest of the document's sentences, keyed by sentence id as
+	 * Processor.parseSentences keys them, and close the reader.
+	 */
+	public Map<Integer, Sentence> readAll() throws XMLStreamException {
+		Map<Integer, Sentence> sentret = new HashMap<Integer, Sentence>();
+		try {
+			for (Sentence sent = next(); sent != null; sent = next()) {
+				sentret.put(sent.getIndex(), sent);
+			}
+		} finally {
+			close();
+		}
+		return sentret;
+	}
+
+	/**
+	 * @return The next document/sentences/sentence, or null at the end of
+	 * the document
+	 */
+	public Sentence next() throws XMLStreamException {
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("sentence") && inSentences()) {
+					return readSentence();
+				}
+				path.add(name);
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				path.remove(path.size() - 1);
+			}
+		}
+		return null;
+	}
+
+	public void close() throws XMLStreamException {
+		xml.close();
+	}
+
+	private boolean inSentences() {
+		int n = path.size();
+		return n >= 2 && path.get(n - 1).equals("sentences") && path.get(n - 2).equals("document");
+	}
+
+	// Positioned on <sentence>; leaves the reader on </sentence>
+	private Sentence readSentence() throws XMLStreamException {
+		Sentence sent = new Sentence();
+		int ind = Integer.parseInt(xml.getAttributeValue(null, "id"));
+		Map<Integer, Token> tokenret = new HashMap<Integer, Token>();
+		List<Dep> depret = new ArrayList<Dep>();
+		StringBuilder text = new StringBuilder();
+
+		while (nextChild()) {
+			String name = xml.getLocalName();
+			if (name.equals("tokens")) {
+				while (nextChild()) {
+					if (xml.getLocalName().equals("token")) {
+						Token tk = readToken(text);
+						tokenret.put(tk.getId(), tk);
+					} else {
+						skip();
+					}
+				}
+			} else if (name.equals("collapsed-ccprocessed-dependencies")) {
+				while (nextChild()) {
+					if (xml.getLocalName().equals("dep")) {
+						depret.add(readDep());
+					} else {
+						skip();
+					}
+				}
+			} else {
+				skip();
+			}
+		}
+
+		sent.setIndex(ind);
+		sent.setTokenRet(tokenret);
+		sent.setDepRet(Processor.filterDep(tokenret, depret));
+		sent.setText(text.toString());
+		return sent;
+	}
+
+	private Token readToken(StringBuilder text) throws XMLStreamException {
+		int tInd = Integer.parseInt(xml.getAttributeValue(null, "id"));
+		String word = null, lemma = null, pos = null, ner = null, normner = null;
+		while (nextChild()) {
+			String name = xml.getLocalName();
+			if (name.equals("word")) {
+				word = xml.getElementText();
+				text.append(word);
+				text.append(" ");
+			} else if (name.equals("lemma")) {
+				lemma = xml.getElementText();
+			} else if (name.equals("POS")) {
+				pos = xml.getElementText();
+			} else if (name.equals("NER")) {
+				ner = xml.getElementText();
+			} else if (name.equals("NormalizedNER")) {
+				normner = xml.getElementText();
+			} else {
+				skip();
+			}
+		}
+		return Processor.newToken(tInd, word, lemma, pos, ner, normner);
+	}
+
+	private Dep readDep() throws XMLStreamException {
+		Dep dep = new Dep();
+		Governor gov = new Governor();
+		Dependent depend = new Dependent();
+		dep.setDep(xml.getAttributeValue(null, "type"));
+		while (nextChild()) {
+			String name = xml.getLocalName();
+			if (name.equals("governor")) {
+				gov.setIdx(Integer.parseInt(xml.getAttributeValue(null, "idx")));
+				gov.setValue(xml.getElementText().toLowerCase());
+			} else if (name.equals("dependent")) {
+				depend.setIdx(Integer.parseInt(xml.getAttributeValue(null, "idx")));
+				depend.setValue(xml.getElementText().toLowerCase());
+			} else {
+				skip();
+			}
+		}
+		dep.setGov(gov);
+		dep.setDepend(depend);
+		return dep;
+	}
+
+	/**
+	 * Move to the next child element of the current element.
+	 * @return false, positioned on the current element's end tag, if there
+	 * are no more
+	 */
+	private boolean nextChild() throws XMLStreamException {
+		while (true) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+	}
+
+	// Positioned on a start tag; leaves the reader on its end tag
+	private void skip() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package co.nlu.process;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.MDC;
+
+import coc.Agent;
+import coc.AgentPool;
+
+import co.nlu.models.Sentence;
+import co.nlu.utils.Log;
+
+/**
+ * Processes many CoreNLP documents on a fixed pool of worker threads,
+ * writing one OWL file per document. Each document runs on an Agent borrowed
+ * from an AgentPool the size of the worker pool, so no two workers ever share
+ * an engine, and every Agent is a copy of the one compiled rule base.
+ * <p>
+ * A document fails if it can't be read, any of its facts can't be built or
+ * run, or its OWL can't be written. Documents with the same name in
+ * different directories get numbered OWL files rather than overwriting one
+ * another.
+ *
+ * <pre>
+ * java co.nlu.process.DocumentBatchProcessor [-threads n] [-out dir] file-or-directory...
+ * </pre>
+ */
+public class DocumentBatchProcessor extends Processor {
+	private final int threads;
+	private final File outputDir;
+	private final AgentPool agents;
+
+	/**
+	 * One worker per processor, writing to Ontology/output.
+	 */
+	public DocumentBatchProcessor() {
+		this(Runtime.getRuntime().availableProcessors(), new File("Ontology/output"));
+	}
+
+	/**
+	 * @param threads The number of documents to process at once
+	 * @param outputDir Where each document's OWL file is written
+	 */
+	public DocumentBatchProcessor(int threads, File outputDir) {
+		this.threads = threads;
+		this.outputDir = outputDir;
+		this.agents = new AgentPool(threads);
+	}
+
+	/**
+	 * Process one document, or every document in a directory.
+	 */
+	@Override
+	public void process(File file) {
+		try {
+			process(Collections.singletonList(file));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Process the given CoreNLP XML files, and every .xml file in the given
+	 * directories, and wait for them all to finish.
+	 * @return The number of documents that failed
+	 */
+	public int process(List<File> files) throws InterruptedException {
+		List<File> unlisted = new ArrayList<File>();
+		List<File> docs = listDocuments(files, unlisted);
+		Map<File, File> outputs = getOutputFiles(docs);
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		try {
+			for (final File doc : docs) {
+				final File owl = outputs.get(doc);
+				results.add(workers.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						processDocument(doc, owl);
+						return null;
+					}
+				}));
+			}
+		} finally {
+			workers.shutdown();
+		}
+
+		int failed = unlisted.size();
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				results.get(i).get();
+			} catch (ExecutionException e) {
+				failed++;
+				Log.error("Failed to process " + docs.get(i), e.getCause());
+			}
+		}
+		return failed;
+	}
+
+	private void processDocument(File doc, File owl) throws Exception {
+		MDC.put("msgId", doc.getName());
+		try {
+			Map<Integer, Sentence> sentences;
+			InputStream in = new BufferedInputStream(new FileInputStream(doc));
+			try {
+				sentences = new CoreNLPReader(in).readAll();
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+
+			Agent agent = agents.borrow();
+			try {
+				generateFacts(sentences, agent, owl.getPath());
+			} finally {
+				agents.release(agent);
+			}
+		} finally {
+			MDC.remove("msgId");
+		}
+	}
+
+	/**
+	 * @return The OWL file written for a document: its name, with .owl for
+	 * .xml, in the output directory
+	 */
+	public File getOutputFile(File doc) {
+		return new File(outputDir, getBaseName(doc) + ".owl");
+	}
+
+	/**
+	 * @return The OWL file for each document, in order. The first document
+	 * with a given name gets getOutputFile(doc); later ones get name-2.owl,
+	 * name-3.owl and so on.
+	 */
+	public Map<File, File> getOutputFiles(List<File> docs) {
+		Map<File, File> outputs = new LinkedHashMap<File, File>();
+		Set<String> used = new HashSet<String>();
+		for (File doc : docs) {
+			String name = getBaseName(doc);
+			String unique = name;
+			for (int n = 2; !used.add(unique.toLowerCase()); n++) {
+				unique = name + "-" + n;
+			}
+			if (!unique.equals(name)) {
+				Log.info(doc + " is written to " + unique + ".owl, as another document is named " + name);
+			}
+			outputs.put(doc, new File(outputDir, unique + ".owl"));
+		}
+		return outputs;
+	}
+
+	private static String getBaseName(File doc) {
+		String name = doc.getName();
+		if (name.toLowerCase().endsWith(".xml")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return name;
+	}
+
+	// The documents to process, each once; directories that can't be read go to unlisted
+	private static List<File> listDocuments(List<File> files, List<File> unlisted) {
+		Set<File> docs = new LinkedHashSet<File>();
+		for (File file : files) {
+			if (file.isDirectory()) {
+				File[] children = file.listFiles();
+				if (children == null) {
+					Log.error("Failed to list " + file);
+					unlisted.add(file);
+					continue;
+				}
+				Arrays.sort(children);
+				for (File child : children) {
+					if (child.isFile() && child.getName().toLowerCase().endsWith(".xml")) {
+						docs.add(child.getAbsoluteFile());
+					}
+				}
+			} else {
+				docs.add(file.getAbsoluteFile());
+			}
+		}
+		return new ArrayList<File>(docs);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		File out = new File("Ontology/output");
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-out")) {
+				out = new File(args[++i]);
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+
+		long t0 = System.currentTimeMillis();
+		int failed = new DocumentBatchProcessor(threads, out).process(files);
+		Log.info("Processed " + listDocuments(files, new ArrayList<File>()).size() + " documents on " + threads + " threads in "
+				+ (System.currentTimeMillis() - t0) + " ms, " + failed + " failed");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
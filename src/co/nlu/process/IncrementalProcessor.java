@@ -0,0 +1,167 @@
+package co.nlu.process;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.MDC;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.agent.engine.ReteException;
+import coc.convertion.VelocityEngineUtils;
+import coc.convertion.entity.FactEntity;
+
+import co.nlu.models.Sentence;
+import co.nlu.utils.Log;
+
+/**
+ * Processes a CoreNLP document a sentence at a time. Each sentence's facts
+ * go through the rules as soon as the sentence has been read, its triples
+ * are written out, and its facts are retracted again. Only the class and
+ * property declarations are kept from one sentence to the next, so working
+ * memory and the output held back stay the size of one sentence however long
+ * the document is.
+ * <p>
+ * The triples are Processor's, grouped by sentence rather than by section.
+ * A rule that looks across sentences (age-individule allows one age
+ * individual per document) only sees the sentence in hand.
+ */
+public class IncrementalProcessor extends Processor {
+	private static final String FACT_PREFIX = "_fact";
+
+	@Override
+	public void process(String text) {
+		if (StringUtils.isBlank(text)) {
+			Log.debug("The input text is empty.");
+			return;
+		}
+		Writer out = null;
+		try {
+			out = openOutput();
+			process(new CoreNLPReader(new StringReader(text)), out);
+		} catch (Exception e) {
+			Log.error("IncrementalProcessor.process(text) exception", e);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	@Override
+	public void process(File file) {
+		InputStream in = null;
+		Writer out = null;
+		try {
+			in = new BufferedInputStream(new FileInputStream(file));
+			out = openOutput();
+			process(new CoreNLPReader(in), out);
+		} catch (Exception e) {
+			Log.error("IncrementalProcessor.process(file) exception", e);
+		} finally {
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	// The file Processor writes its OWL to
+	private static Writer openOutput() throws IOException {
+		File file = new File("Ontology/output/" + VelocityEngineUtils.getOWLFileNameContent());
+		return new OutputStreamWriter(FileUtils.openOutputStream(file), "UTF-8");
+	}
+
+	/**
+	 * Read the document's sentences and write its OWL to out, flushing it
+	 * after each sentence. Neither stream is closed.
+	 */
+	public void process(CoreNLPReader reader, Writer out) throws XMLStreamException, ReteException, IOException {
+		MDC.put("msgId", "coctest");
+		try {
+			Agent agent = new Agent();
+			Set<Fact> kept = new HashSet<Fact>();
+			Vector<Fact> declarations = new Vector<Fact>();
+
+			out.write(VelocityEngineUtils.getOWLHeaderContent());
+			Fact initial = agent.newOrdered("initial-fact");
+			agent.getEngine().assertFact(initial);
+			kept.add(initial);
+			step(agent, kept, declarations, new HashMap<Integer, Sentence>(), out);
+
+			for (Sentence stnc = reader.next(); stnc != null; stnc = reader.next()) {
+				List<Fact> facts = new ArrayList<Fact>();
+				addFacts(agent, stnc, facts);
+				agent.assertAll(facts);
+
+				Map<Integer, Sentence> sentence = new HashMap<Integer, Sentence>();
+				sentence.put(stnc.getIndex(), stnc);
+				step(agent, kept, declarations, sentence, out);
+			}
+			reader.close();
+		} finally {
+			MDC.remove("msgId");
+		}
+	}
+
+	/**
+	 * Run the rules over what was just asserted, write out the triples, and
+	 * retract everything but the declarations, which go into kept.
+	 */
+	private void step(Agent agent, Set<Fact> kept, Vector<Fact> declarations, Map<Integer, Sentence> sentence, Writer out)
+			throws ReteException, IOException {
+		agent.inference();
+
+		Vector<Fact> added = new Vector<Fact>();
+		List<Fact> scratch = new ArrayList<Fact>();
+		for (Enumeration<?> e = agent.getEngine().listFacts(); e.hasMoreElements();) {
+			Fact f = (Fact) e.nextElement();
+			if (kept.contains(f)) {
+				continue;
+			}
+			if (isDeclaration(f)) {
+				kept.add(f);
+				added.add(f);
+			} else {
+				scratch.add(f);
+			}
+		}
+		declarations.addAll(added);
+
+		Vector<Fact> facts = new Vector<Fact>(declarations);
+		facts.addAll(scratch);
+		out.write(VelocityEngineUtils.getSentenceOWLContent(added, facts, sentence));
+		out.flush();
+
+		for (Fact f : scratch) {
+			agent.getEngine().retract(f);
+		}
+	}
+
+	// (_fact X rdf:type owl:Class), or an object or datatype property
+	private static boolean isDeclaration(Fact f) {
+		if (!FACT_PREFIX.equalsIgnoreCase(f.getName())) {
+			return false;
+		}
+		FactEntity entity = new FactEntity(f);
+		String category = entity.getCategory();
+		return "rdf:type".equals(entity.getType())
+				&& ("owl:Class".equalsIgnoreCase(category) || "owl:ObjectProperty".equalsIgnoreCase(category)
+						|| "owl:DatatypeProperty".equalsIgnoreCase(category));
+	}
+}
@@ -0,0 +1,279 @@
+package co.nlu.process;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import co.jwi.WordNetAgent;
+import co.nlu.utils.Log;
+
+/**
+ * A bounded cache of WordNet lemmas by (word, POS) in front of
+ * WordNetAgent.getLemma. It is split into segments, each an LRU map with a
+ * lock of its own, so threads looking up different words rarely wait on one
+ * another, and the WordNet lookup itself is made outside any segment lock.
+ * <p>
+ * The cache can be warmed from a frequency list, and saved to and loaded
+ * from a small binary file so that a restart begins warm.
+ */
+public class LemmaCache {
+	/** System property holding the most entries the shared cache keeps */
+	public static final String SIZE_PROPERTY = "nlu.lemmacache.size";
+
+	/** System property naming a file the shared cache is loaded from at start and saved to at exit */
+	public static final String FILE_PROPERTY = "nlu.lemmacache.file";
+
+	private static final int SEGMENTS = 16;
+	private static final int MAGIC = 0x4c454d31; // "LEM1"
+
+	private static LemmaCache _shared = null;
+
+	private final int capacity;
+	private final Segment[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private static class Segment extends LinkedHashMap<String, String> {
+		private static final long serialVersionUID = 1L;
+		private final int max;
+
+		Segment(int max) {
+			super(16, 0.75f, true);
+			this.max = max;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > max;
+		}
+	}
+
+	/**
+	 * @param capacity The most lemmas to keep; the least recently used go first
+	 */
+	public LemmaCache(int capacity) {
+		if (capacity < SEGMENTS) {
+			throw new IllegalArgumentException("Lemma cache size must be at least " + SEGMENTS + ": " + capacity);
+		}
+		this.capacity = capacity;
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(capacity / SEGMENTS);
+		}
+	}
+
+	/**
+	 * The cache Processor uses, of nlu.lemmacache.size entries (10000 by
+	 * default). If nlu.lemmacache.file is set it is loaded from that file, if
+	 * the file exists, and saved back to it when the JVM exits.
+	 */
+	public synchronized static LemmaCache shared() {
+		if (_shared == null) {
+			final LemmaCache cache = new LemmaCache(Integer.getInteger(SIZE_PROPERTY, 10000));
+			String filename = System.getProperty(FILE_PROPERTY);
+			if (filename != null) {
+				final File file = new File(filename);
+				if (file.exists()) {
+					try {
+						cache.load(file);
+					} catch (IOException e) {
+						Log.error("Failed to load lemma cache " + file, e);
+					}
+				}
+				Runtime.getRuntime().addShutdownHook(new Thread("lemma-cache-save") {
+					public void run() {
+						try {
+							cache.save(file);
+						} catch (IOException e) {
+							Log.error("Failed to save lemma cache " + file, e);
+						}
+					}
+				});
+			}
+			_shared = cache;
+		}
+		return _shared;
+	}
+
+	/**
+	 * @return The lemma of word as the part of speech pos, from the cache or
+	 * else from WordNet
+	 */
+	public String getLemma(String word, String pos) {
+		String key = key(word, pos);
+		Segment segment = segmentFor(key);
+		String lemma;
+		synchronized (segment) {
+			lemma = segment.get(key);
+		}
+		if (lemma != null) {
+			hits.incrementAndGet();
+			return lemma;
+		}
+
+		misses.incrementAndGet();
+		lemma = lookup(word, pos);
+		if (lemma != null) {
+			synchronized (segment) {
+				segment.put(key, lemma);
+			}
+		}
+		return lemma;
+	}
+
+	/**
+	 * Look a lemma up in WordNet: in the preloaded dictionary if there is one,
+	 * otherwise through WordNetAgent.
+	 */
+	protected String lookup(String word, String pos) {
+		PreloadedWordNet wordnet = PreloadedWordNet.shared();
+		if (wordnet != null) {
+			String lemma = wordnet.getLemma(word, pos);
+			if (lemma != null) {
+				return lemma;
+			}
+		}
+		// WordNetAgent is not known to be thread-safe
+		synchronized (WordNetAgent.class) {
+			return WordNetAgent.getInstance().getLemma(word, pos);
+		}
+	}
+
+	/**
+	 * Look up the lemma of each word in a frequency list, most frequent first,
+	 * until the list ends or the cache is full. Each line holds a word and
+	 * its part of speech, separated by white space; anything after them, such
+	 * as a count, is ignored, as are blank lines and lines starting with '#'.
+	 * @return The number of words looked up
+	 */
+	public int prewarm(Reader frequencyList) throws IOException {
+		BufferedReader in = new BufferedReader(frequencyList);
+		int n = 0;
+		String line;
+		while (n < capacity && (line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\\s+");
+			if (fields.length < 2) {
+				continue;
+			}
+			getLemma(fields[0], fields[1]);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Write every cached lemma to file.
+	 */
+	public void save(File file) throws IOException {
+		List<String[]> entries = new ArrayList<String[]>();
+		for (int i = 0; i < SEGMENTS; i++) {
+			synchronized (segments[i]) {
+				for (Iterator<Map.Entry<String, String>> it = segments[i].entrySet().iterator(); it.hasNext();) {
+					Map.Entry<String, String> e = it.next();
+					entries.add(new String[] { e.getKey(), e.getValue() });
+				}
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(entries.size());
+			for (String[] entry : entries) {
+				out.writeUTF(entry[0]);
+				out.writeUTF(entry[1]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Add the lemmas saved in file to the cache.
+	 * @return The number of lemmas read
+	 */
+	public int load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a lemma cache file: " + file);
+			}
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				String key = in.readUTF();
+				String lemma = in.readUTF();
+				Segment segment = segmentFor(key);
+				synchronized (segment) {
+					segment.put(key, lemma);
+				}
+			}
+			return n;
+		} catch (EOFException e) {
+			throw new IOException("Lemma cache file is truncated: " + file);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void clear() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			synchronized (segments[i]) {
+				segments[i].clear();
+			}
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The number of lemmas held
+	 */
+	public int size() {
+		int n = 0;
+		for (int i = 0; i < SEGMENTS; i++) {
+			synchronized (segments[i]) {
+				n += segments[i].size();
+			}
+		}
+		return n;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private static String key(String word, String pos) {
+		return pos + '\t' + word;
+	}
+
+	private Segment segmentFor(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (SEGMENTS - 1)];
+	}
+}
@@ -0,0 +1,305 @@
+package co.nlu.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import co.nlu.utils.Log;
+
+/**
+ * The part of WordNet the pipeline looks lemmas up in - the adjective and
+ * adverb indexes and exception lists - memory-mapped and read once into
+ * immutable tables. getLemma gives what WordNetAgent.getLemma gives for
+ * adjectives and adverbs, with no file I/O and no lock.
+ * <p>
+ * The dictionary directory is the system property nlu.wordnet.path, or
+ * profile/wn-dict under the working directory if it is not set. It is
+ * only preloaded if nlu.wordnet.mode is "preload"; otherwise lemmas are
+ * looked up through WordNetAgent's file-backed dictionary as before.
+ */
+public class PreloadedWordNet {
+	/** System property holding the WordNet dictionary directory */
+	public static final String PATH_PROPERTY = "nlu.wordnet.path";
+
+	/** System property choosing how WordNet is read: "file" (the default) or "preload" */
+	public static final String MODE_PROPERTY = "nlu.wordnet.mode";
+
+	/** The WordNet dictionary directory if nlu.wordnet.path is not set, relative to the working directory */
+	public static final String DEFAULT_PATH = "profile/wn-dict";
+
+	// WordNetAgent's own exceptions, which it checks before WordNet
+	private static final String[][] AGENT_EXCEPTIONS = { { "more-JJR", "much" }, { "more-RBR", "much" },
+			{ "most-JJS", "much" }, { "most-RBS", "much" }, { "less-JJR", "little" }, { "less-RBR", "little" },
+			{ "least-JJS", "little" }, { "least-RBS", "little" }, { "better-JJR", "good" }, { "best-JJS", "good" },
+			{ "better-RBR", "well" }, { "best-RBS", "well" }, { "earlier-JJR", "early" },
+			{ "earliest-JJS", "early" }, { "healthier-JJR", "healthy" } };
+
+	// JWI's adjective suffix rules; adverbs have none
+	private static final String[][] ADJ_SUFFIXES = { { "er", "" }, { "est", "" }, { "er", "e" }, { "est", "e" } };
+
+	private static boolean _loaded = false;
+	private static PreloadedWordNet _shared = null;
+
+	private final Map<String, String> agentExceptions;
+	private final Set<String> adjIndex;
+	private final Set<String> advIndex;
+	private final Map<String, String[]> adjExceptions;
+	private final Map<String, String[]> advExceptions;
+
+	/**
+	 * Read index.adj, index.adv, adj.exc and adv.exc from a WordNet
+	 * dictionary directory.
+	 */
+	public PreloadedWordNet(File dir) throws IOException {
+		Map<String, String> agent = new HashMap<String, String>();
+		for (String[] e : AGENT_EXCEPTIONS) {
+			agent.put(e[0], e[1]);
+		}
+		this.agentExceptions = Collections.unmodifiableMap(agent);
+		this.adjIndex = readIndex(new File(dir, "index.adj"));
+		this.advIndex = readIndex(new File(dir, "index.adv"));
+		this.adjExceptions = readExceptions(new File(dir, "adj.exc"));
+		this.advExceptions = readExceptions(new File(dir, "adv.exc"));
+	}
+
+	/**
+	 * @return The configured WordNet dictionary directory; an error is logged
+	 * if it does not exist
+	 */
+	public static String getPath() {
+		String path = System.getProperty(PATH_PROPERTY, DEFAULT_PATH);
+		if (!new File(path).isDirectory()) {
+			Log.error("No WordNet dictionary at " + new File(path).getAbsolutePath() + "; set the system property "
+					+ PATH_PROPERTY + " to the WordNet dict directory");
+		}
+		return path;
+	}
+
+	/**
+	 * The dictionary LemmaCache looks lemmas up in, loaded on first use from
+	 * nlu.wordnet.path.
+	 * @return null unless nlu.wordnet.mode is "preload", or if the dictionary
+	 * could not be read
+	 */
+	public synchronized static PreloadedWordNet shared() {
+		if (!_loaded) {
+			_loaded = true;
+			if ("preload".equalsIgnoreCase(System.getProperty(MODE_PROPERTY))) {
+				File dir = new File(getPath());
+				try {
+					long t0 = System.currentTimeMillis();
+					_shared = new PreloadedWordNet(dir);
+					Log.info("Preloaded WordNet from " + dir + " in " + (System.currentTimeMillis() - t0) + " ms");
+				} catch (IOException e) {
+					Log.error("Failed to preload WordNet from " + dir + "; using the file-backed dictionary", e);
+				}
+			}
+		}
+		return _shared;
+	}
+
+	/**
+	 * @return The lemma of word as the part of speech pos, or null if pos is
+	 * not an adjective or adverb tag
+	 */
+	public String getLemma(String word, String pos) {
+		Set<String> index;
+		Map<String, String[]> exceptions;
+		if (pos.equals("JJ") || pos.equals("JJR") || pos.equals("JJS")) {
+			index = adjIndex;
+			exceptions = adjExceptions;
+		} else if (pos.equals("RB") || pos.equals("RBR") || pos.equals("RBS")) {
+			index = advIndex;
+			exceptions = advExceptions;
+		} else {
+			return null;
+		}
+
+		String lemma = agentExceptions.get(word + "-" + pos);
+		if (lemma != null) {
+			return lemma;
+		}
+		List<String> stems = getBaseForms(word, index, exceptions);
+		return stems.isEmpty() ? word : adjustCase(word, stems.get(0));
+	}
+
+	public int getAdjectiveCount() {
+		return adjIndex.size();
+	}
+
+	public int getAdverbCount() {
+		return advIndex.size();
+	}
+
+	// WordNetAgent.getBaseForms: stem the word, else the last word of a phrase
+	private List<String> getBaseForms(String word, Set<String> index, Map<String, String[]> exceptions) {
+		List<String> stems = findStems(word, index, exceptions);
+		if (stems.isEmpty() && word.indexOf(" ") != -1) {
+			String[] words = word.split(" ");
+			String last = words[words.length - 1];
+			stems = findStems(last, index, exceptions);
+			if (!stems.isEmpty()) {
+				words[words.length - 1] = adjustCase(last, stems.get(0));
+				StringBuilder phrase = new StringBuilder();
+				for (String w : words) {
+					if (phrase.length() > 0) {
+						phrase.append('_');
+					}
+					phrase.append(w);
+				}
+				stems = new ArrayList<String>();
+				stems.add(phrase.toString());
+				return stems;
+			}
+		}
+		for (int i = 0; i < stems.size(); i++) {
+			stems.set(i, adjustCase(word, stems.get(i)));
+		}
+		return stems;
+	}
+
+	// JWI's WordnetStemmer.findStems for one part of speech
+	private List<String> findStems(String word, Set<String> index, Map<String, String[]> exceptions) {
+		word = word.trim();
+		if (word.length() == 0) {
+			return new ArrayList<String>();
+		}
+		word = word.replaceAll("\\s+", "_").toLowerCase();
+
+		TreeSet<String> found = new TreeSet<String>();
+		String[] roots = exceptions.get(word);
+		if (roots != null) {
+			Collections.addAll(found, roots);
+		}
+		if (index.contains(word)) {
+			found.add(word);
+		}
+		if (roots != null) {
+			return new ArrayList<String>(found);
+		}
+
+		TreeSet<String> candidates = new TreeSet<String>();
+		if (index == adjIndex) {
+			for (String[] rule : ADJ_SUFFIXES) {
+				if (word.endsWith(rule[0])) {
+					String stem = word.substring(0, word.length() - rule[0].length()) + rule[1];
+					if (stem.length() > 0) {
+						candidates.add(stem);
+					}
+				}
+			}
+		}
+		for (String stem : candidates) {
+			if (index.contains(stem)) {
+				found.add(stem);
+			}
+		}
+		// like JWI, offer the unconfirmed stems when none is in the index
+		return new ArrayList<String>(found.isEmpty() ? candidates : found);
+	}
+
+	// co.jwi.Utils.adjustCase: give the stem the word's capitalization
+	private static String adjustCase(String word, String stem) {
+		if (stem.length() == 0 || !isUpperCase(word.charAt(0))) {
+			return stem;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			if (!isUpperCase(word.charAt(i))) {
+				return stem.substring(0, 1).toUpperCase(Locale.US) + stem.substring(1);
+			}
+		}
+		return stem.toUpperCase(Locale.US);
+	}
+
+	private static boolean isUpperCase(char c) {
+		return 'A' <= c && c <= 'Z';
+	}
+
+	private static Set<String> readIndex(File file) throws IOException {
+		Set<String> index = new HashSet<String>();
+		for (String[] fields : readLines(file)) {
+			index.add(fields[0]);
+		}
+		return Collections.unmodifiableSet(index);
+	}
+
+	private static Map<String, String[]> readExceptions(File file) throws IOException {
+		Map<String, String[]> exceptions = new HashMap<String, String[]>();
+		for (String[] fields : readLines(file)) {
+			if (fields.length > 1) {
+				String[] roots = new String[fields.length - 1];
+				System.arraycopy(fields, 1, roots, 0, roots.length);
+				exceptions.put(fields[0], roots);
+			}
+		}
+		return Collections.unmodifiableMap(exceptions);
+	}
+
+	/**
+	 * Map a WordNet file and split its lines into space-separated fields,
+	 * skipping the licence lines, which start with a space.
+	 */
+	private static List<String[]> readLines(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			List<String[]> lines = new ArrayList<String[]>();
+			List<String> fields = new ArrayList<String>();
+			StringBuilder field = new StringBuilder();
+			boolean skip = false;
+			boolean start = true;
+			while (buf.hasRemaining()) {
+				char c = (char) (buf.get() & 0xff);
+				if (start) {
+					skip = (c == ' ');
+					start = false;
+				}
+				if (c == '\n' || c == '\r') {
+					if (!skip) {
+						addField(fields, field);
+						if (!fields.isEmpty()) {
+							lines.add(fields.toArray(new String[fields.size()]));
+						}
+					}
+					fields.clear();
+					field.setLength(0);
+					start = true;
+				} else if (!skip) {
+					if (c == ' ') {
+						addField(fields, field);
+					} else {
+						field.append(c);
+					}
+				}
+			}
+			if (!skip) {
+				addField(fields, field);
+				if (!fields.isEmpty()) {
+					lines.add(fields.toArray(new String[fields.size()]));
+				}
+			}
+			return lines;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void addField(List<String> fields, StringBuilder field) {
+		if (field.length() > 0) {
+			fields.add(field.toString());
+			field.setLength(0);
+		}
+	}
+}
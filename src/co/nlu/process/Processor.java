@@ -1,21 +1,28 @@
 package co.nlu.process;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Formatter;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Vector;
 
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.MDC;
 
 import coc.Agent;
 import coc.agent.engine.Fact;
+import coc.agent.engine.ReteException;
 import coc.convertion.VelocityEngineUtils;
 
 import co.jwi.WordNetAgent;
@@ -24,7 +31,6 @@ import co.nlu.models.Dependent;
 import co.nlu.models.Governor;
 import co.nlu.models.Sentence;
 import co.nlu.models.Token;
-import co.nlu.utils.FileUtil;
 import co.nlu.utils.Log;
 import co.nlu.utils.XMLElement;
 
@@ -36,22 +42,18 @@ import co.nlu.utils.XMLElement;
 public class Processor implements ProcessorImpl{
 	
 	static{
-		WordNetAgent.setWNPath("C:/Work/WorkSpace/workspace_NLP/co-nlu-ontology/cyberobject/apps/co-nlu-ontology/profile/wn-dict");
+		WordNetAgent.setWNPath(PreloadedWordNet.getPath());
 	}
 
 	@Override
 	public void process(String text) {
-		XMLElement el = null;
-		Map<Integer, Sentence> setnsRet = new HashMap<Integer, Sentence>();
-		
 		if (StringUtils.isNotBlank(text)) {
 			Log.debug("Start to process input\n" + text);
-			MDC.put("msgId", "coctest");
-			el = XMLElement.parseXML(text);
-			setnsRet = parseSentences(el);
-			generateFacts(setnsRet);
-			setnsRet.clear();
-			MDC.remove("msgId");
+			try {
+				process(new CoreNLPReader(new StringReader(text)));
+			} catch (XMLStreamException e) {
+				Log.error("Processor.process(text) exception", e);
+			}
 		}
 		else
 			Log.debug("The input text is empty.");
@@ -59,16 +61,26 @@ public class Processor implements ProcessorImpl{
 
 	@Override
 	public void process(File file) {
-		String text = "";
+		InputStream in = null;
 		try {
-			text = FileUtil.readFileToString(file);
-			process(text);
+			in = new BufferedInputStream(new FileInputStream(file));
+			process(new CoreNLPReader(in));
 		} catch (Exception e) {
 			Log.debug("Processor.process(file) exception" + e.getLocalizedMessage());
+		} finally {
+			IOUtils.closeQuietly(in);
 		}
 	}
+
+	private void process(CoreNLPReader reader) throws XMLStreamException {
+		MDC.put("msgId", "coctest");
+		Map<Integer, Sentence> setnsRet = reader.readAll();
+		generateFacts(setnsRet);
+		setnsRet.clear();
+		MDC.remove("msgId");
+	}
 	
-	protected Map<Integer, Sentence> parseSentences(XMLElement el){
+	public Map<Integer, Sentence> parseSentences(XMLElement el){
 		Map<Integer, Sentence> sentret = new HashMap<Integer, Sentence>();
 		if(null == el){
 			return null;
@@ -92,7 +104,7 @@ public class Processor implements ProcessorImpl{
 		return sentret;
 	}
 
-	private List filterDep(Map<Integer, Token> tokenret, List depret) {
+	static List filterDep(Map<Integer, Token> tokenret, List depret) {
 		// TODO Auto-generated method stub
 		List filterDepRet = new ArrayList();
 		for(Iterator it = depret.iterator();it.hasNext();){
@@ -105,7 +117,7 @@ public class Processor implements ProcessorImpl{
 		return filterDepRet;
 	}
 
-	private boolean checkNormalizedToken(Map<Integer, Token> tokenret,
+	private static boolean checkNormalizedToken(Map<Integer, Token> tokenret,
 			Dep dep) {
 		// TODO Auto-generated method stub
 		if(tokenret.get(dep.getGov().getIdx()).isHasNormalNer() && 
@@ -151,100 +163,128 @@ public class Processor implements ProcessorImpl{
 		List<XMLElement> tList = sentence.getElements("tokens/token");
 		for(Iterator<XMLElement> it = tList.iterator();it.hasNext();){
 			XMLElement token = (XMLElement) it.next();
-			Token tk = new Token();
 			int tInd = Integer.parseInt(token.getAttribute("id"));
-			String pos =  token.getChildText("POS");
-			String ner = token.getChildText("NER");
-			String normner = token.getChildText("NormalizedNER");
-			if(!ner.equals("O") && (null !=normner)){
-				tk.setHasNormalNer(true);
-				normner = normner.replace(" ", "-");
-				tk.setNorner(normner);
-			}else
-				tk.setHasNormalNer(false);
-			tk.setId(tInd);
-			tk.setWord(token.getChildText("word").toLowerCase());
-			tk.setPos(pos);
-			if(pos.startsWith("JJ") || pos.startsWith("RB")){
-				tk.setLemma(WordNetAgent.getInstance().getLemma(token.getChildText("word"), pos));
-			}else
-				tk.setLemma(token.getChildText("lemma").toLowerCase());
-			if(ner.equals("O") && (pos.startsWith("JJ") || pos.startsWith("RB") || pos.startsWith("NN")))
-			{
-//				ner = WordNetAgent.getInstance().getRelevantParent(tk.getLemma(), pos);
-				if(null == ner || ner.trim().equals("")){
-					ner = "O";
-				}
-				tk.setNer(ner);
-				Log.debug("Wordnet parent word: " + tk.getLemma() + ", " + pos + " -> " + tk.getNer());
-			}else
-				tk.setNer(ner);
-			
+			Token tk = newToken(tInd, token.getChildText("word"), token.getChildText("lemma"),
+					token.getChildText("POS"), token.getChildText("NER"), token.getChildText("NormalizedNER"));
 			tokenRet.put(tInd, tk);
 		}
 		return tokenRet;
 	}
 
+	/**
+	 * Make a Token from the fields of a CoreNLP token element: the word and
+	 * lemma are lower-cased (adjectives and adverbs take WordNet's lemma), and
+	 * a normalized NER value is kept, with spaces made dashes, for named
+	 * entities only.
+	 */
+	static Token newToken(int tInd, String word, String lemma, String pos, String ner, String normner) {
+		Token tk = new Token();
+		if(!ner.equals("O") && (null !=normner)){
+			tk.setHasNormalNer(true);
+			normner = normner.replace(" ", "-");
+			tk.setNorner(normner);
+		}else
+			tk.setHasNormalNer(false);
+		tk.setId(tInd);
+		tk.setWord(word.toLowerCase());
+		tk.setPos(pos);
+		if(pos.startsWith("JJ") || pos.startsWith("RB")){
+			tk.setLemma(LemmaCache.shared().getLemma(word, pos));
+		}else
+			tk.setLemma(lemma.toLowerCase());
+		if(ner.equals("O") && (pos.startsWith("JJ") || pos.startsWith("RB") || pos.startsWith("NN")))
+		{
+//			ner = WordNetAgent.getInstance().getRelevantParent(tk.getLemma(), pos);
+			if(null == ner || ner.trim().equals("")){
+				ner = "O";
+			}
+			tk.setNer(ner);
+			Log.debug("Wordnet parent word: " + tk.getLemma() + ", " + pos + " -> " + tk.getNer());
+		}else
+			tk.setNer(ner);
+		return tk;
+	}
+
 	private void generateFacts(Map<Integer, Sentence> setnsRet) {
 		Agent agent = new Agent();
 		Log.debug("Start to genearte facts");
-		StringBuilder sb = new StringBuilder();
-		String[] factslist;
-		Sentence stnc;
-		Formatter formatter = new Formatter(sb, Locale.US);
-		for (Object skey : setnsRet.keySet()) {
-			stnc = setnsRet.get(skey);
-			for(Object tkey : stnc.getTokenRet().keySet()){
-				Token tk = (Token)stnc.getTokenRet().get(tkey);
-				if(tk.getPos().length()!=1){
-					formatter.format("(%s %s_%sx%s %s)", "_pos", tk.getWord(),stnc.getIndex(),tk.getId(),tk.getPos());
-					sb.append("\n");
-					formatter.format("(%s %s_%sx%s %s)", "_lema", tk.getWord(),stnc.getIndex(),tk.getId(),tk.getLemma());
-					sb.append("\n");
-				}
-				if(tk.getNer().equals("O"))
-					continue;
-				formatter.format("(%s %s_%sx%s %s)", "_ner", tk.getWord(),stnc.getIndex(),tk.getId(),tk.getNer());
-				sb.append("\n");
-				if(tk.isHasNormalNer()){
-					formatter.format("(%s %s_%sx%s %s)", "_normner", tk.getWord(),stnc.getIndex(),tk.getId(),tk.getNorner());
-					sb.append("\n");
-				}
-				
-				
-			}
-			List depList = stnc.getDepRet();
-			for(Iterator it = depList.iterator();it.hasNext();){
-				Dep dep = (Dep) it.next();
-				formatter.format("(_td %s %s_%sx%s %s_%sx%s)",dep.getDep(),dep.getGov().getValue(),stnc.getIndex(),dep.getGov().getIdx(),
-						dep.getDepend().getValue(), stnc.getIndex(),dep.getDepend().getIdx());
-				sb.append("\n");
-			}
-//			stnc.clear();
-		}
-		
-		System.out.println(sb);
-		factslist = sb.toString().split("\\n");
-		agent.assertFact("(initial-fact)");
-		for(int i = 0; i<factslist.length;i++){
-			agent.assertFact(factslist[i]);
-			Log.debug("Assert initial fact: "+factslist[i]);
+		List<Fact> facts = new ArrayList<Fact>();
+		try {
+			addDocumentFacts(agent, setnsRet, facts);
+		} catch (ReteException re) {
+			Log.error("Failed to build facts: " + re.getMessage());
 		}
+		agent.assertAll(facts);
 
 		agent.inference();
 		agent.clear();
-		Enumeration fen = agent.getEngine().listFacts();
-		Vector vec = new Vector();
-		Fact mfact;
-		//System.out.println("All Facts Begin -->");
-		while (fen.hasMoreElements()) {
-			mfact = (Fact) fen.nextElement();
-			vec.add(mfact);
-			//System.out.println("  --->"+ mfact.toStringWithParens());
-		}
-		//System.out.println("--All Facts End --");
-		VelocityEngineUtils.getOutputOWL(vec, setnsRet);
+		VelocityEngineUtils.getOutputOWL(listFacts(agent), setnsRet,
+				"Ontology/output/" + VelocityEngineUtils.getOWLFileNameContent());
 		Log.debug("Test cpl finished!");
 		Log.debug("End facts generateion");
 	}
+
+	/**
+	 * Run a document's facts through agent, which must hold no facts other
+	 * than (initial-fact), and save the OWL to owlPath. Unlike the single
+	 * document path, nothing is logged and skipped: a fact that can't be
+	 * built, a rule that fails or OWL that can't be written is thrown.
+	 */
+	protected void generateFacts(Map<Integer, Sentence> setnsRet, Agent agent, String owlPath)
+			throws ReteException, IOException {
+		List<Fact> facts = new ArrayList<Fact>();
+		addDocumentFacts(agent, setnsRet, facts);
+		agent.getEngine().assertAll(facts);
+		agent.getEngine().run();
+		agent.clear();
+		VelocityEngineUtils.writeOutputOWL(listFacts(agent), setnsRet, owlPath);
+	}
+
+	/**
+	 * Build (initial-fact) and every sentence's facts for the agent, in
+	 * sentence order, and add them to facts.
+	 */
+	public void addDocumentFacts(Agent agent, Map<Integer, Sentence> setnsRet, List<Fact> facts) throws ReteException {
+		facts.add(agent.newOrdered("initial-fact"));
+		for (Object skey : setnsRet.keySet()) {
+			addFacts(agent, setnsRet.get(skey), facts);
+		}
+	}
+
+	private static Vector<Fact> listFacts(Agent agent) {
+		Vector<Fact> vec = new Vector<Fact>();
+		for (Enumeration<?> fen = agent.getEngine().listFacts(); fen.hasMoreElements();) {
+			vec.add((Fact) fen.nextElement());
+		}
+		return vec;
+	}
+
+	/**
+	 * Build one sentence's facts for the agent and add them to facts: _pos and
+	 * _lema for each word, _ner and _normner for named entities, and _td for
+	 * each dependency. A word is named word_SxI, for sentence S and token I.
+	 */
+	protected void addFacts(Agent agent, Sentence stnc, List<Fact> facts) throws ReteException {
+		String sx = "_" + stnc.getIndex() + "x";
+		for (Object tkey : stnc.getTokenRet().keySet()) {
+			Token tk = (Token) stnc.getTokenRet().get(tkey);
+			String name = tk.getWord() + sx + tk.getId();
+			if (tk.getPos().length() != 1) {
+				facts.add(agent.newOrdered("_pos", name, tk.getPos()));
+				facts.add(agent.newOrdered("_lema", name, tk.getLemma()));
+			}
+			if (tk.getNer().equals("O"))
+				continue;
+			facts.add(agent.newOrdered("_ner", name, tk.getNer()));
+			if (tk.isHasNormalNer()) {
+				facts.add(agent.newOrdered("_normner", name, tk.getNorner()));
+			}
+		}
+		List<?> depList = stnc.getDepRet();
+		for (Iterator<?> it = depList.iterator(); it.hasNext();) {
+			Dep dep = (Dep) it.next();
+			facts.add(agent.newOrdered("_td", dep.getDep(), dep.getGov().getValue() + sx + dep.getGov().getIdx(),
+					dep.getDepend().getValue() + sx + dep.getDepend().getIdx()));
+		}
+	}
 }
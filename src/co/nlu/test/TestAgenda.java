@@ -0,0 +1,111 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+import coc.agent.engine.Activation;
+import coc.agent.engine.Defrule;
+import coc.agent.engine.Rete;
+import coc.agent.engine.Strategy;
+import coc.agent.engine.Token;
+
+/**
+ * The agenda must fire higher salience first and, within a salience, the
+ * most recent activation first under depth and the oldest first under
+ * breadth; and a Strategy that only knows Vectors must still order it.
+ */
+public class TestAgenda {
+	private static final String[] DEPTH = { "high 3", "high 2", "high 1", "mid 3", "mid 2", "mid 1", "low 3",
+			"low 2", "low 1" };
+	private static final String[] BREADTH = { "high 1", "high 2", "high 3", "mid 1", "mid 2", "mid 3", "low 1",
+			"low 2", "low 3" };
+
+	public static void main(String[] a) throws Exception
+	{
+		Rete rete = new Rete();
+		rete.executeCommand("(defrule mid (x ?n) => )");
+		rete.executeCommand("(defrule low (declare (salience -5)) (x ?n) => )");
+		rete.executeCommand("(defrule high (declare (salience 10)) (x ?n) => )");
+
+		TestUtil.check(agenda(rete).equals(list(DEPTH)), "depth agenda " + agenda(rete));
+		TestUtil.check(rete.run() == DEPTH.length, "not every activation fired");
+		System.out.println("OK: depth fires by salience, then most recent first");
+
+		rete.executeCommand("(set-strategy breadth)");
+		TestUtil.check(agenda(rete).equals(list(BREADTH)), "breadth agenda " + agenda(rete));
+		System.out.println("OK: breadth fires by salience, then oldest first");
+
+		rete.setStrategy(new VectorDepth());
+		TestUtil.check(agenda(rete).equals(list(DEPTH)), "Vector strategy agenda " + agenda(rete));
+		System.out.println("OK: a Vector-only strategy orders the agenda");
+	}
+
+	// depth as a strategy written before the agenda was a heap would have it;
+	// Strategy's methods take a raw Vector
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static class VectorDepth implements Strategy {
+		public void addActivation(Activation a, Vector v)
+		{
+			int sal = a.getRule().getSalience(), time = recency(a);
+			int i = 0;
+			while (i < v.size()) {
+				Activation b = (Activation) v.elementAt(i);
+				int s = b.getRule().getSalience();
+				if (s < sal || (s == sal && recency(b) <= time)) {
+					break;
+				}
+				i++;
+			}
+			v.insertElementAt(a, i);
+		}
+
+		private static int recency(Activation a)
+		{
+			Token t = a.getToken();
+			return t.fact(t.size() - 1).getFactId();
+		}
+
+		public int findActivation(Token t, Defrule d, Vector v)
+		{
+			for (int i = 0; i < v.size(); i++) {
+				Activation b = (Activation) v.elementAt(i);
+				if (b.getRule() == d && b.getToken().dataEquals(t)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public String getName()
+		{
+			return "vector-depth";
+		}
+	}
+
+	// the agenda in firing order, after a reset and three facts
+	private static List<String> agenda(Rete rete) throws Exception
+	{
+		rete.reset();
+		for (int n = 1; n <= 3; n++) {
+			rete.executeCommand("(assert (x " + n + "))");
+		}
+		List<String> list = new ArrayList<String>();
+		for (Enumeration<?> e = rete.listActivations(); e.hasMoreElements();) {
+			Activation act = (Activation) e.nextElement();
+			Token t = act.getToken();
+			list.add(act.getRule().getName() + " " + t.fact(t.size() - 1).get(0).listValue(null).get(0));
+		}
+		return list;
+	}
+
+	private static List<String> list(String[] items)
+	{
+		List<String> list = new ArrayList<String>();
+		for (String s : items) {
+			list.add(s);
+		}
+		return list;
+	}
+}
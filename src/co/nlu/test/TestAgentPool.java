@@ -0,0 +1,150 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import coc.Agent;
+import coc.AgentPool;
+import coc.agent.engine.Fact;
+import coc.agent.engine.Rete;
+
+/**
+ * Several threads sharing a small AgentPool, each asserting the same
+ * NLU-shaped facts into what it borrowed. Every run must end with the same
+ * fact-list as a fresh Agent, which it can't if a reused Agent keeps
+ * anything from its last user, and the pool must never make more Agents
+ * than its size.
+ */
+public class TestAgentPool {
+	private static final String[] TDS = { "nsubj", "dobj", "amod", "advmod", "det", "prep_of" };
+
+	public static void main(String[] a) throws Exception
+	{
+		int threads = a.length > 0 ? Integer.parseInt(a[0]) : 8;
+		int runs = a.length > 1 ? Integer.parseInt(a[1]) : 10;
+		final AgentPool pool = new AgentPool(a.length > 2 ? Integer.parseInt(a[2]) : 3);
+
+		Agent fresh = new Agent();
+		fresh.reset();
+		final List<String> expected = runFacts(fresh, 5);
+		final int[] failures = new int[1];
+
+		long t0 = System.nanoTime();
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int sentences = 5;
+			workers[i] = new Thread() {
+				public void run()
+				{
+					try {
+						for (int r = 0; r < runs; r++) {
+							Agent agent = pool.borrow();
+							try {
+								if (!runFacts(agent, sentences).equals(expected)) {
+									synchronized (failures) {
+										failures[0]++;
+									}
+								}
+							} finally {
+								pool.release(agent);
+							}
+						}
+					} catch (Exception ex) {
+						ex.printStackTrace();
+						synchronized (failures) {
+							failures[0]++;
+						}
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for (int i = 0; i < threads; i++) {
+			workers[i].join();
+		}
+		long elapsed = System.nanoTime() - t0;
+
+		TestUtil.check(failures[0] == 0 && pool.getCreatedCount() <= pool.getSize(), failures[0] + " runs differ, "
+				+ pool.getCreatedCount() + " agents created for a pool of " + pool.getSize());
+		System.out.println(String.format("OK: %d runs on %d threads, %d agents, %.3f ms", threads * runs, threads,
+				pool.getCreatedCount(), elapsed / 1e6));
+
+		checkRelease();
+		checkFailedAgent();
+	}
+
+	// an Agent can only go back to the pool it came from, once
+	private static void checkRelease() throws Exception
+	{
+		AgentPool pool = new AgentPool(2);
+		Agent agent = pool.borrow();
+		pool.release(agent);
+		TestUtil.check(rejected(pool, agent), "an Agent was released twice");
+		TestUtil.check(rejected(pool, new Agent()), "an Agent from outside the pool was released");
+		Agent first = pool.borrow(), second = pool.borrow();
+		TestUtil.check(first != second, "one Agent was handed to two borrowers");
+		pool.release(first);
+		pool.release(second);
+		System.out.println("OK: double and foreign releases are rejected");
+	}
+
+	// an Agent that fails to start must not keep its place in the pool
+	private static void checkFailedAgent() throws Exception
+	{
+		final int[] made = new int[1];
+		AgentPool pool = new AgentPool(1) {
+			protected Agent newAgent()
+			{
+				if (made[0]++ == 0) {
+					throw new IllegalStateException("no rules");
+				}
+				return super.newAgent();
+			}
+		};
+		try {
+			pool.borrow();
+			TestUtil.check(false, "the failing Agent was handed out");
+		} catch (IllegalStateException expected) {
+		}
+		TestUtil.check(pool.getCreatedCount() == 0, pool.getCreatedCount() + " places held after a failed Agent");
+		Agent agent = pool.borrow(1000);
+		TestUtil.check(agent != null, "the pool shrank after a failed Agent");
+		pool.release(agent);
+		System.out.println("OK: a failed Agent gives its place back");
+	}
+
+	private static boolean rejected(AgentPool pool, Agent agent)
+	{
+		try {
+			pool.release(agent);
+			return false;
+		} catch (IllegalArgumentException expected) {
+			return true;
+		}
+	}
+
+	private static List<String> runFacts(Agent agent, int sentences) throws Exception
+	{
+		Rete rete = agent.getEngine();
+		for (int s = 1; s <= sentences; s++) {
+			for (int k = 1; k <= 8; k++) {
+				String word = "w" + k + "_" + s + "x" + k;
+				agent.assertFact("(_pos " + word + " " + (k % 2 == 0 ? "NN" : "VB") + ")");
+				agent.assertFact("(_lema " + word + " w" + k + ")");
+				if (k > 1) {
+					agent.assertFact("(_td " + TDS[k % TDS.length] + " w" + (k - 1) + "_" + s + "x" + (k - 1) + " "
+							+ word + ")");
+				}
+			}
+		}
+		agent.inference();
+
+		List<String> facts = new ArrayList<String>();
+		for (Enumeration<?> e = rete.listFacts(); e.hasMoreElements();) {
+			Fact f = (Fact) e.nextElement();
+			facts.add(f.getFactId() + " " + f);
+		}
+		return facts;
+	}
+}
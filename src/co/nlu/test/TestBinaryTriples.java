@@ -0,0 +1,95 @@
+package co.nlu.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.convertion.BinaryTripleReader;
+import coc.convertion.BinaryTripleWriter;
+import coc.convertion.VelocityEngineUtils;
+import coc.convertion.entity.Triple;
+import co.nlu.models.Sentence;
+
+/**
+ * Triples written by BinaryTripleWriter must read back the same, terms and
+ * all; and a document's binary triples, abbreviated again with its
+ * prefixes, must be the triples of its Turtle, in the same order.
+ */
+public class TestBinaryTriples {
+	public static void main(String[] a) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryTripleWriter writer = new BinaryTripleWriter(bytes);
+		List<Triple> written = new ArrayList<Triple>();
+		for (int i = 0; i < 300; i++) {
+			written.add(new Triple("http://example.org/s" + i, "http://example.org/p" + (i % 3), "http://example.org/s"
+					+ (i + 1), false));
+			written.add(new Triple("http://example.org/s" + i, "http://www.w3.org/2000/01/rdf-schema#label",
+					i % 2 == 0 ? "http://example.org/s" + i : "café \"" + i + "\"", true));
+		}
+		for (Triple t : written) {
+			writer.writeTriple(t.getSubject(), t.getPredicate(), t.getObject(), t.isLiteral());
+		}
+		writer.close();
+		List<Triple> read = new BinaryTripleReader(new ByteArrayInputStream(bytes.toByteArray())).readAll();
+		TestUtil.check(read.size() == written.size(), read.size() + " triples read of " + written.size());
+		for (int i = 0; i < written.size(); i++) {
+			TestUtil.check(read.get(i).toString().equals(written.get(i).toString()), "read " + read.get(i)
+					+ " for " + written.get(i));
+			TestUtil.check(read.get(i).isLiteral() == written.get(i).isLiteral(), "literal lost on " + read.get(i));
+		}
+		System.out.println("OK: " + written.size() + " triples of " + writer.getTermCount() + " terms in "
+				+ bytes.size() + " bytes read back");
+
+		Map<Integer, Sentence> sentences = TestUtil.readSentences(TestUtil.document(a));
+		Vector<Fact> vec = TestUtil.inferredFacts(new Agent(), sentences);
+		StringWriter turtle = new StringWriter();
+		VelocityEngineUtils.writeOWL(vec, sentences, turtle);
+		List<String> lines = new ArrayList<String>();
+		for (String line : turtle.toString().split("\n")) {
+			line = line.trim();
+			if (line.length() > 0 && !line.startsWith("#") && !line.startsWith("@")) {
+				lines.add(line.replaceAll("\\s+\\.$", " ."));
+			}
+		}
+
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		VelocityEngineUtils.writeBinaryOWL(vec, sentences, binary);
+		BinaryTripleReader reader = new BinaryTripleReader(new ByteArrayInputStream(binary.toByteArray()));
+		List<Triple> triples = reader.readAll();
+		TestUtil.check(triples.size() == lines.size(), triples.size() + " binary triples for " + lines.size()
+				+ " lines");
+		for (int i = 0; i < triples.size(); i++) {
+			String line = abbreviate(triples.get(i), reader.getPrefixes());
+			TestUtil.check(line.equals(lines.get(i)), "binary " + line + " for Turtle " + lines.get(i));
+		}
+		System.out.println("OK: " + triples.size() + " triples in " + binary.size() + " bytes, "
+				+ turtle.toString().getBytes("UTF-8").length + " as Turtle");
+		System.exit(0);
+	}
+
+	private static String abbreviate(Triple t, Map<String, String> prefixes)
+	{
+		return abbreviate(t.getSubject(), prefixes) + " " + abbreviate(t.getPredicate(), prefixes) + " "
+				+ (t.isLiteral() ? "\"" + t.getObject() + "\"" : abbreviate(t.getObject(), prefixes)) + " .";
+	}
+
+	private static String abbreviate(String iri, Map<String, String> prefixes)
+	{
+		String best = null;
+		for (Map.Entry<String, String> p : prefixes.entrySet()) {
+			String ns = p.getValue();
+			if (iri.startsWith(ns) && iri.length() > ns.length()
+					&& (best == null || ns.length() > prefixes.get(best).length())) {
+				best = p.getKey();
+			}
+		}
+		return best == null ? "<" + iri + ">" : best + ":" + iri.substring(prefixes.get(best).length());
+	}
+}
@@ -0,0 +1,68 @@
+package co.nlu.test;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.Map;
+
+import co.nlu.models.Dep;
+import co.nlu.models.Sentence;
+import co.nlu.models.Token;
+import co.nlu.process.CoreNLPReader;
+import co.nlu.process.Processor;
+import co.nlu.utils.FileUtil;
+import co.nlu.utils.XMLElement;
+
+/**
+ * The streaming CoreNLPReader against the JDOM and XPath parse: both must
+ * give the same sentences, tokens and dependencies. Also times both.
+ */
+public class TestCoreNLPReader {
+	private static final int RUNS = 20;
+
+	public static void main(String[] a) throws Exception
+	{
+		String text = FileUtil.readFileToString(TestUtil.document(a));
+		Processor processor = new Processor();
+		Map<Integer, Sentence> dom = processor.parseSentences(XMLElement.parseXML(text));
+		Map<Integer, Sentence> stax = new CoreNLPReader(new StringReader(text)).readAll();
+		TestUtil.check(dump(dom).equals(dump(stax)), "the two parses differ");
+		System.out.println("OK: " + stax.size() + " sentences");
+
+		for (int i = 0; i < 3; i++) {
+			long t0 = System.nanoTime();
+			for (int r = 0; r < RUNS; r++) {
+				processor.parseSentences(XMLElement.parseXML(text));
+			}
+			long t1 = System.nanoTime();
+			for (int r = 0; r < RUNS; r++) {
+				new CoreNLPReader(new StringReader(text)).readAll();
+			}
+			long t2 = System.nanoTime();
+			System.out.println(String.format("JDOM and XPath %8.3f ms, streaming %8.3f ms", (t1 - t0) / (RUNS * 1e6),
+					(t2 - t1) / (RUNS * 1e6)));
+		}
+	}
+
+	private static String dump(Map<Integer, Sentence> sentences)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Integer key : sentences.keySet()) {
+			Sentence s = sentences.get(key);
+			sb.append(key).append(' ').append(s.getIndex()).append(" [").append(s.getText()).append("]\n");
+			for (Object tkey : s.getTokenRet().keySet()) {
+				Token tk = (Token) s.getTokenRet().get(tkey);
+				sb.append("  ").append(tkey).append(' ').append(tk.getId()).append(' ').append(tk.getWord())
+						.append(' ').append(tk.getLemma()).append(' ').append(tk.getPos()).append(' ')
+						.append(tk.getNer()).append(' ').append(tk.isHasNormalNer()).append(' ')
+						.append(tk.getNorner()).append('\n');
+			}
+			for (Iterator<?> it = s.getDepRet().iterator(); it.hasNext();) {
+				Dep dep = (Dep) it.next();
+				sb.append("  ").append(dep.getDep()).append(' ').append(dep.getGov().getIdx()).append(' ')
+						.append(dep.getGov().getValue()).append(' ').append(dep.getDepend().getIdx()).append(' ')
+						.append(dep.getDepend().getValue()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+}
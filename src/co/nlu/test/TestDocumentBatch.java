@@ -0,0 +1,45 @@
+package co.nlu.test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+
+import co.nlu.process.DocumentBatchProcessor;
+
+/**
+ * DocumentBatchProcessor must count every document it could not turn into
+ * an OWL file as failed, and must not let two documents of the same name
+ * write the same file.
+ */
+public class TestDocumentBatch {
+	public static void main(String[] a) throws Exception
+	{
+		File doc = new File(a.length > 0 ? a[0] : "src/co/nlu/resource/t1.xml");
+		File tmp = File.createTempFile("batch", "");
+		tmp.delete();
+		tmp.mkdirs();
+		try {
+			File in1 = new File(tmp, "in1"), in2 = new File(tmp, "in2"), out = new File(tmp, "out");
+			FileUtils.copyFile(doc, new File(in1, "doc.xml"));
+			FileUtils.copyFile(doc, new File(in2, "doc.xml"));
+
+			int failed = new DocumentBatchProcessor(2, out).process(Arrays.asList(in1, in2));
+			TestUtil.check(failed == 0, failed + " documents failed");
+			TestUtil.check(new File(out, "doc.owl").length() > 0 && new File(out, "doc-2.owl").length() > 0,
+					"documents of the same name did not get their own OWL files: " + Arrays.toString(out.list()));
+			System.out.println("OK: documents of the same name write doc.owl and doc-2.owl");
+
+			// a regular file where the output directory should be made
+			File blocked = new File(new File(tmp, "in1/doc.xml"), "out");
+			failed = new DocumentBatchProcessor(1, blocked).process(Arrays.asList(new File(in1, "doc.xml")));
+			TestUtil.check(failed == 1, failed + " failed when the output directory could not be made");
+			failed = new DocumentBatchProcessor(1, out).process(Arrays.asList(new File(tmp, "missing.xml")));
+			TestUtil.check(failed == 1, failed + " failed for a document that does not exist");
+			System.out.println("OK: unwritable output and unreadable documents are counted as failed");
+		} finally {
+			FileUtils.deleteQuietly(tmp);
+		}
+		System.exit(0);
+	}
+}
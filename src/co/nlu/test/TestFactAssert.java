@@ -0,0 +1,135 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import co.nlu.models.Dep;
+import co.nlu.models.Sentence;
+import co.nlu.models.Token;
+import co.nlu.process.Processor;
+import co.nlu.utils.FileUtil;
+import co.nlu.utils.XMLElement;
+
+/**
+ * Asserting a document's initial facts by formatting them as text and
+ * parsing each one (the old generateFacts), by building each Fact and
+ * asserting it on its own, and by building them all and asserting them as
+ * one batch (Processor.addFacts and Rete.assertAll). All three must leave the
+ * same facts, with the same ids, before and after the rules run.
+ */
+public class TestFactAssert {
+	private static final int RUNS = 50;
+
+	public static void main(String[] a) throws Exception
+	{
+		String text = FileUtil.readFileToString(TestUtil.document(a));
+		Map<Integer, Sentence> sentences = new Processor().parseSentences(XMLElement.parseXML(text));
+
+		Agent parsed = new Agent();
+		Agent typed = new Agent();
+		Agent batched = new Agent();
+		parseAll(parsed, sentences);
+		typedAll(typed, sentences);
+		batchAll(batched, sentences);
+		boolean same = facts(parsed).equals(facts(typed)) && facts(parsed).equals(facts(batched));
+		int count = facts(typed).size();
+		parsed.inference();
+		typed.inference();
+		batched.inference();
+		TestUtil.check(same && facts(parsed).equals(facts(typed)) && facts(parsed).equals(facts(batched)),
+				"the three ways of asserting give different facts");
+		System.out.println("OK: " + count + " initial facts, " + facts(typed).size() + " after the rules");
+
+		for (int i = 0; i < 3; i++) {
+			long before = 0, single = 0, batch = 0;
+			for (int r = 0; r < RUNS; r++) {
+				Agent agent = new Agent();
+				long t0 = System.nanoTime();
+				parseAll(agent, sentences);
+				before += System.nanoTime() - t0;
+
+				agent = new Agent();
+				t0 = System.nanoTime();
+				typedAll(agent, sentences);
+				single += System.nanoTime() - t0;
+
+				agent = new Agent();
+				t0 = System.nanoTime();
+				batchAll(agent, sentences);
+				batch += System.nanoTime() - t0;
+			}
+			System.out.println(String.format("%d facts: format and parse %8.3f ms, one at a time %8.3f ms, batch %8.3f ms",
+					count, before / (RUNS * 1e6), single / (RUNS * 1e6), batch / (RUNS * 1e6)));
+		}
+	}
+
+	private static void batchAll(Agent agent, Map<Integer, Sentence> sentences) throws Exception
+	{
+		agent.assertAll(TestUtil.newFacts(agent, sentences));
+	}
+
+	private static void typedAll(Agent agent, Map<Integer, Sentence> sentences) throws Exception
+	{
+		for (Fact f : TestUtil.newFacts(agent, sentences)) {
+			agent.getEngine().assertFact(f);
+		}
+	}
+
+	// What generateFacts used to do, less printing the facts to the console
+	private static void parseAll(Agent agent, Map<Integer, Sentence> sentences)
+	{
+		StringBuilder sb = new StringBuilder();
+		Formatter formatter = new Formatter(sb, Locale.US);
+		for (Object skey : sentences.keySet()) {
+			Sentence stnc = sentences.get(skey);
+			for (Object tkey : stnc.getTokenRet().keySet()) {
+				Token tk = (Token) stnc.getTokenRet().get(tkey);
+				if (tk.getPos().length() != 1) {
+					formatter.format("(%s %s_%sx%s %s)", "_pos", tk.getWord(), stnc.getIndex(), tk.getId(),
+							tk.getPos());
+					sb.append("\n");
+					formatter.format("(%s %s_%sx%s %s)", "_lema", tk.getWord(), stnc.getIndex(), tk.getId(),
+							tk.getLemma());
+					sb.append("\n");
+				}
+				if (tk.getNer().equals("O"))
+					continue;
+				formatter.format("(%s %s_%sx%s %s)", "_ner", tk.getWord(), stnc.getIndex(), tk.getId(), tk.getNer());
+				sb.append("\n");
+				if (tk.isHasNormalNer()) {
+					formatter.format("(%s %s_%sx%s %s)", "_normner", tk.getWord(), stnc.getIndex(), tk.getId(),
+							tk.getNorner());
+					sb.append("\n");
+				}
+			}
+			List<?> depList = stnc.getDepRet();
+			for (Iterator<?> it = depList.iterator(); it.hasNext();) {
+				Dep dep = (Dep) it.next();
+				formatter.format("(_td %s %s_%sx%s %s_%sx%s)", dep.getDep(), dep.getGov().getValue(),
+						stnc.getIndex(), dep.getGov().getIdx(), dep.getDepend().getValue(), stnc.getIndex(),
+						dep.getDepend().getIdx());
+				sb.append("\n");
+			}
+		}
+		String[] factslist = sb.toString().split("\\n");
+		agent.assertFact("(initial-fact)");
+		for (int i = 0; i < factslist.length; i++) {
+			agent.assertFact(factslist[i]);
+		}
+	}
+
+	private static List<String> facts(Agent agent)
+	{
+		List<String> facts = new ArrayList<String>();
+		for (Fact f : TestUtil.listFacts(agent)) {
+			facts.add(f.getFactId() + " " + f);
+		}
+		return facts;
+	}
+}
@@ -0,0 +1,55 @@
+package co.nlu.test;
+
+import java.util.Map;
+import java.util.Vector;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.convertion.FactConvertor;
+import coc.convertion.IndexedFactConvertor;
+import co.nlu.models.Sentence;
+
+/**
+ * IndexedFactConvertor must write every OWL section exactly as FactConvertor
+ * does, for the facts a document leaves after the rules run; and the time
+ * each takes is printed.
+ */
+public class TestFactConvertor {
+	private static final int RUNS = 20;
+
+	public static void main(String[] a) throws Exception
+	{
+		Map<Integer, Sentence> sentences = TestUtil.readSentences(TestUtil.document(a));
+		Vector<Fact> vec = TestUtil.inferredFacts(new Agent(), sentences);
+
+		String[] scanned = scripts(new FactConvertor(vec, sentences));
+		String[] indexed = scripts(new IndexedFactConvertor(vec, sentences));
+		for (int i = 0; i < scanned.length; i++) {
+			TestUtil.check(scanned[i].equals(indexed[i]), "section " + i + " differs");
+		}
+		System.out.println("OK: " + vec.size() + " facts convert the same, " + scanned[3].length()
+				+ " characters of individuals");
+
+		for (int i = 0; i < 3; i++) {
+			long before = 0, after = 0;
+			for (int r = 0; r < RUNS; r++) {
+				long t0 = System.nanoTime();
+				scripts(new FactConvertor(vec, sentences));
+				before += System.nanoTime() - t0;
+
+				t0 = System.nanoTime();
+				scripts(new IndexedFactConvertor(vec, sentences));
+				after += System.nanoTime() - t0;
+			}
+			System.out.println(String.format("%d facts: scanning %8.3f ms, indexed %8.3f ms", vec.size(),
+					before / (RUNS * 1e6), after / (RUNS * 1e6)));
+		}
+		System.exit(0);
+	}
+
+	private static String[] scripts(FactConvertor convertor)
+	{
+		return new String[] { convertor.getDataPropScript(), convertor.getObjectPropScript(),
+				convertor.getClassScript(), convertor.getIndividualScript() };
+	}
+}
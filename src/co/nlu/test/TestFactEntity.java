@@ -0,0 +1,82 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+import coc.convertion.entity.FactEntity;
+
+/**
+ * A FactEntity read from a Fact's slots must be what parsing the printed
+ * fact gives, for every fact a document leaves and for facts whose values
+ * do not print as one word; and the time each takes is printed.
+ */
+public class TestFactEntity {
+	private static final int RUNS = 50;
+
+	public static void main(String[] a) throws Exception
+	{
+		Agent agent = new Agent();
+		List<Fact> all = new ArrayList<Fact>();
+		for (Fact f : TestUtil.inferredFacts(agent, TestUtil.readSentences(TestUtil.document(a)))) {
+			if ("_fact".equals(f.getName())) {
+				all.add(f);
+			}
+		}
+
+		all.add(agent.newOrdered("_fact", "John_1x1", "has-AGE", "30"));
+		all.add(agent.newOrdered("_fact", "John_1x1", "has-HEIGHT", "1.8"));
+		all.add(agent.newOrdered("_fact", "John_1x1", "rdf:type", "PERSON", "extra"));
+		all.add(agent.newOrdered("_fact", "John_1x1", "rdf:type", "f(x)"));
+		all.add(agent.newOrdered("_fact", "John_1x1", "rdf:type", "f(x)", "extra"));
+		all.add(agent.newOrdered("_fact", "John_1x1", "rdf:type", "a)b"));
+		all.add(fact(agent, "John_1x1", new Value("John is 30", RU.STRING), "x"));
+		all.add(fact(agent, "John_1x1", new Value("tomorrow", RU.STRING), "y"));
+		all.add(fact(agent, "John_1x1", new Value("say \"hi\"", RU.STRING), "z"));
+
+		for (Fact f : all) {
+			FactEntity direct = new FactEntity(f);
+			FactEntity parsed = new FactEntity(f.toStringWithParens());
+			TestUtil.check(direct.getPrefix().equals(parsed.getPrefix()) && direct.getName().equals(parsed.getName())
+					&& direct.getType().equals(parsed.getType()) && direct.getCategory().equals(parsed.getCategory()),
+					"read " + direct.getName() + " " + direct.getType() + " " + direct.getCategory() + " from "
+							+ f.toStringWithParens());
+		}
+		System.out.println("OK: " + all.size() + " facts read from their slots as parsing reads them");
+
+		for (int i = 0; i < 3; i++) {
+			long before = 0, after = 0;
+			for (int r = 0; r < RUNS; r++) {
+				long t0 = System.nanoTime();
+				for (Fact f : all) {
+					new FactEntity(f.toStringWithParens());
+				}
+				before += System.nanoTime() - t0;
+
+				t0 = System.nanoTime();
+				for (Fact f : all) {
+					new FactEntity(f);
+				}
+				after += System.nanoTime() - t0;
+			}
+			System.out.println(String.format("%d facts: print and parse %8.3f ms, from slots %8.3f ms", all.size(),
+					before / (RUNS * 1e6), after / (RUNS * 1e6)));
+		}
+		System.exit(0);
+	}
+
+	private static Fact fact(Agent agent, String name, Value type, String category) throws Exception
+	{
+		ValueVector vv = new ValueVector(3);
+		vv.add(new Value(name, RU.ATOM));
+		vv.add(type);
+		vv.add(new Value(category, RU.ATOM));
+		Fact f = new Fact("_fact", agent.getEngine());
+		f.set(new Value(vv, RU.LIST), 0);
+		return f;
+	}
+}
@@ -0,0 +1,67 @@
+package co.nlu.test;
+
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.Rete;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+
+/**
+ * Assert/duplicate-check/retract timings on a growing fact-list.
+ * With the content index on the fact-list the cost per fact should stay
+ * flat from 100 to 100,000 facts.
+ */
+public class TestFactIndex {
+	private static final int[] SIZES = { 100, 1000, 10000, 100000 };
+
+	public static void main(String[] a) throws Exception
+	{
+		// warm up
+		run(new Rete(), 10000, false);
+		for (int i = 0; i < SIZES.length; i++) {
+			run(new Rete(), SIZES[i], true);
+		}
+	}
+
+	private static void run(Rete rete, int n, boolean print) throws Exception
+	{
+		Fact[] facts = new Fact[n];
+		for (int i = 0; i < n; i++) {
+			facts[i] = newFact(rete, i);
+		}
+
+		long t0 = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			rete.assertFact(facts[i]);
+		}
+		long t1 = System.nanoTime();
+		int dups = 0;
+		for (int i = 0; i < n; i++) {
+			if (rete.assertFact(newFact(rete, i)) == -1)
+				dups++;
+		}
+		long t2 = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			rete.retract(newFact(rete, i));
+		}
+		long t3 = System.nanoTime();
+
+		if (print) {
+			System.out.println(String.format(
+					"%7d facts: assert %8.3f us/fact, duplicate %8.3f us/fact (%d rejected), retract %8.3f us/fact",
+					n, (t1 - t0) / 1000.0 / n, (t2 - t1) / 1000.0 / n, dups,
+					(t3 - t2) / 1000.0 / n));
+		}
+	}
+
+	private static Fact newFact(Rete rete, int i) throws Exception
+	{
+		ValueVector vv = new ValueVector();
+		vv.add(new Value("word_1x" + i, RU.ATOM));
+		vv.add(new Value("rdf:type", RU.ATOM));
+		vv.add(new Value("owl:NamedIndividual", RU.ATOM));
+		Fact f = new Fact("_fact", rete);
+		f.set(new Value(vv, RU.LIST), 0);
+		return f;
+	}
+}
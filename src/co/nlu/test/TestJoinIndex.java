@@ -0,0 +1,71 @@
+package co.nlu.test;
+
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.Rete;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+
+/**
+ * Join cost with the join memories indexed on the equality variables,
+ * against the same network with every memory squeezed into one bucket
+ * (set-node-index-hash 1, no growth), which makes each join scan the whole
+ * opposite memory. Indexed time should grow linearly with the number of
+ * sentences; the scan grows quadratically.
+ */
+public class TestJoinIndex {
+	private static final int[] SENTENCES = { 25, 50, 100, 200 };
+	private static final String[] TDS = { "nsubj", "dobj", "amod", "advmod", "det", "prep_of" };
+
+	public static void main(String[] a) throws Exception
+	{
+		// warm up
+		run(100, true);
+		run(100, false);
+
+		for (int i = 0; i < SENTENCES.length; i++) {
+			long indexed = run(SENTENCES[i], true);
+			long scan = run(SENTENCES[i], false);
+			System.out.println(String.format("%4d sentences: indexed %9.3f ms, scan %9.3f ms",
+					SENTENCES[i], indexed / 1e6, scan / 1e6));
+		}
+	}
+
+	private static long run(int sentences, boolean indexed) throws Exception
+	{
+		Rete rete = new Rete();
+		if (!indexed) {
+			rete.executeCommand("(set-node-index-hash 1)");
+			rete.executeCommand("(set-node-index-load-factor 0)");
+		}
+		// one join on ?gov, one on ?gov and ?dep together
+		rete.executeCommand("(defrule gov-lemma (_td ? ?gov ?) (_lema ?gov ?) => )");
+		rete.executeCommand("(defrule td-fact (_td ? ?gov ?dep) (_fact ?gov ? ?dep) => )");
+		rete.reset();
+
+		long t0 = System.nanoTime();
+		for (int s = 1; s <= sentences; s++) {
+			for (int k = 1; k <= 8; k++) {
+				String word = "w" + k + "_" + s + "x" + k;
+				rete.assertFact(newFact(rete, "_lema", word, "w" + k));
+				if (k > 1) {
+					String gov = "w" + (k - 1) + "_" + s + "x" + (k - 1);
+					rete.assertFact(newFact(rete, "_td", TDS[k % TDS.length], gov, word));
+					rete.assertFact(newFact(rete, "_fact", gov, "has", word));
+				}
+			}
+		}
+		return System.nanoTime() - t0;
+	}
+
+	private static Fact newFact(Rete rete, String head, String... slots) throws Exception
+	{
+		ValueVector vv = new ValueVector();
+		for (int i = 0; i < slots.length; i++) {
+			vv.add(new Value(slots[i], RU.ATOM));
+		}
+		Fact f = new Fact(head, rete);
+		f.set(new Value(vv, RU.LIST), 0);
+		return f;
+	}
+}
@@ -0,0 +1,93 @@
+package co.nlu.test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.nlu.process.LemmaCache;
+
+/**
+ * LemmaCache over a stand-in for WordNet that counts its lookups: repeated
+ * words must not be looked up again, from one thread or many; the cache
+ * must stay within its size; and a saved cache must load back warm.
+ */
+public class TestLemmaCache {
+	private static final String[] WORDS = { "better", "best", "quickly", "happier", "red", "faster", "largest",
+			"well", "worse", "often" };
+
+	private static class Counting extends LemmaCache {
+		final AtomicInteger lookups = new AtomicInteger();
+
+		Counting(int capacity) {
+			super(capacity);
+		}
+
+		protected String lookup(String word, String pos) {
+			lookups.incrementAndGet();
+			return word.toLowerCase() + "/" + pos.substring(0, 2).toLowerCase();
+		}
+	}
+
+	public static void main(String[] a) throws Exception
+	{
+		final Counting cache = new Counting(1024);
+		for (int r = 0; r < 100; r++) {
+			for (String w : WORDS) {
+				TestUtil.check((w + "/jj").equals(cache.getLemma(w, "JJ")), "wrong lemma for " + w);
+			}
+		}
+		TestUtil.check(cache.lookups.get() == WORDS.length, cache.lookups.get() + " lookups for " + WORDS.length
+				+ " words");
+		TestUtil.check(cache.getHitCount() == 99 * WORDS.length && cache.getMissCount() == WORDS.length,
+				"counted " + cache.getHitCount() + " hits and " + cache.getMissCount() + " misses");
+		System.out.println("OK: " + cache.getHitCount() + " hits, " + cache.getMissCount() + " misses");
+
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run()
+				{
+					for (int r = 0; r < 1000; r++) {
+						for (String w : WORDS) {
+							cache.getLemma(w, "RB");
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		// two threads may both miss on a word before either has stored it
+		int rbLookups = cache.lookups.get() - WORDS.length;
+		TestUtil.check(rbLookups >= WORDS.length && rbLookups <= WORDS.length * threads.length, rbLookups
+				+ " lookups for " + WORDS.length + " words on 8 threads");
+		System.out.println("OK: 8 threads made " + rbLookups + " lookups for " + WORDS.length + " words");
+
+		Counting small = new Counting(64);
+		for (int i = 0; i < 1000; i++) {
+			small.getLemma("w" + i, "JJ");
+		}
+		TestUtil.check(small.size() <= 64, "a cache of 64 holds " + small.size());
+		System.out.println("OK: a cache of 64 holds " + small.size() + " after 1000 words");
+
+		Counting warm = new Counting(1024);
+		int n = warm.prewarm(new StringReader("# word pos count\nbetter JJR 120\nbest JJS 80\n\nquickly RB 40\n"));
+		TestUtil.check(n == 3 && warm.size() == 3, "prewarmed " + n + " words, holds " + warm.size());
+
+		File file = File.createTempFile("lemmas", ".bin");
+		try {
+			cache.save(file);
+			Counting loaded = new Counting(1024);
+			TestUtil.check(loaded.load(file) == cache.size(), "loaded a different number of lemmas");
+			for (String w : WORDS) {
+				TestUtil.check((w + "/rb").equals(loaded.getLemma(w, "RB")), "wrong loaded lemma for " + w);
+			}
+			TestUtil.check(loaded.lookups.get() == 0, "a loaded cache went to WordNet");
+			System.out.println("OK: " + cache.size() + " lemmas saved in " + file.length() + " bytes and loaded warm");
+		} finally {
+			file.delete();
+		}
+	}
+}
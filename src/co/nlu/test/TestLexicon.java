@@ -0,0 +1,76 @@
+package co.nlu.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import coc.agent.model.Lexicon;
+
+/**
+ * A Lexicon must never answer from an empty table: threads that ask for a
+ * fresh lexicon at the same moment must all find its words; and it must see
+ * the file change.
+ */
+public class TestLexicon {
+	private static final int WORDS = 200000;
+	private static final int THREADS = 8;
+
+	public static void main(String[] a) throws Exception
+	{
+		final File file = File.createTempFile("lexicon", ".txt");
+		file.deleteOnExit();
+		write(file, "kilogram");
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger missed = new AtomicInteger();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run()
+				{
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					Lexicon lex = Lexicon.forFile(file.getPath());
+					if (!lex.contains("KILOGRAM") || !lex.contains("w" + (WORDS - 1))) {
+						missed.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		TestUtil.check(missed.get() == 0, missed.get() + " of " + THREADS
+				+ " threads missed words during the first load");
+		TestUtil.check(Lexicon.forFile(file.getPath()).size() == WORDS + 1, "size "
+				+ Lexicon.forFile(file.getPath()).size());
+		System.out.println("OK: " + THREADS + " threads found every word while the lexicon was first loaded");
+
+		write(file, "metre");
+		file.setLastModified(file.lastModified() + 2000);
+		Thread.sleep(1100);
+		Lexicon lex = Lexicon.forFile(file.getPath());
+		TestUtil.check(lex.contains("metre") && !lex.contains("kilogram"), "the changed file was not read again");
+		System.out.println("OK: a changed file is read again");
+	}
+
+	private static void write(File file, String word) throws Exception
+	{
+		Writer w = new FileWriter(file);
+		try {
+			w.write(word + "\n");
+			for (int i = 0; i < WORDS; i++) {
+				w.write("w" + i + "\n");
+			}
+		} finally {
+			w.close();
+		}
+	}
+}
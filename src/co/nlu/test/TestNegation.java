@@ -0,0 +1,134 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import coc.agent.engine.Activation;
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.Rete;
+import coc.agent.engine.Token;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+
+/**
+ * Checks (not ...) joins that keep per-key counts against the same joins
+ * tested token by token. Each "count" rule has a twin whose negated pattern
+ * carries an extra (eq ?v ?v) test, which keeps it on the old path. After
+ * every random assert or retract both rules must have the same activations.
+ */
+public class TestNegation {
+	private static final String[] RULES = {
+			// one key, like the nlu.clp idempotence guards
+			"(defrule count-1 (_td ? ?gov ?) (not (_fact ?gov rdf:type owl:NamedIndividual)) => )",
+			"(defrule scan-1 (_td ? ?gov ?) (not (_fact ?gov&:(eq ?gov ?gov) rdf:type owl:NamedIndividual)) => )",
+			// two keys
+			"(defrule count-2 (_td ? ?gov ?dep) (not (_fact ?gov ? ?dep)) => )",
+			"(defrule scan-2 (_td ? ?gov ?dep) (not (_fact ?gov ? ?dep&:(eq ?dep ?dep))) => )",
+			// a join after the negation
+			"(defrule count-3 (_td ? ?gov ?) (not (_fact ?gov rdf:type ?)) (_lema ?gov ?) => )",
+			"(defrule scan-3 (_td ? ?gov ?) (not (_fact ?gov&:(eq ?gov ?gov) rdf:type ?)) (_lema ?gov ?) => )" };
+
+	private static final String[] WORDS = { "w1", "w2", "w3", "w4", "w5" };
+	private static final String[] TYPES = { "owl:NamedIndividual", "owl:Class" };
+
+	public static void main(String[] a) throws Exception
+	{
+		int steps = a.length > 0 ? Integer.parseInt(a[0]) : 5000;
+		long seed = a.length > 1 ? Long.parseLong(a[1]) : 1;
+		Random random = new Random(seed);
+
+		Rete rete = new Rete();
+		// the first rule comes before any facts, the rest are added late
+		rete.executeCommand(RULES[0]);
+		rete.executeCommand(RULES[1]);
+		rete.reset();
+
+		int failures = 0;
+		for (int step = 0; step < steps; step++) {
+			if (step == steps / 4) {
+				for (int i = 2; i < RULES.length; i++) {
+					rete.executeCommand(RULES[i]);
+				}
+			}
+			Fact f = randomFact(rete, random);
+			if (random.nextInt(3) == 0) {
+				rete.retract(f);
+			} else {
+				rete.assertFact(f);
+			}
+			if (!compare(rete, step)) {
+				failures++;
+			}
+			if (random.nextInt(50) == 0) {
+				rete.run();
+			}
+		}
+
+		TestUtil.check(failures == 0, failures + " of " + steps + " steps differ (seed " + seed + ")");
+		System.out.println("OK: " + steps + " steps (seed " + seed + ")");
+	}
+
+	private static boolean compare(Rete rete, int step) throws Exception
+	{
+		boolean ok = true;
+		for (int n = 1; n <= 3; n++) {
+			List<String> counted = activations(rete, "count-" + n);
+			List<String> scanned = activations(rete, "scan-" + n);
+			if (!counted.equals(scanned)) {
+				System.out.println("step " + step + ": count-" + n + " " + counted + " but scan-" + n + " "
+						+ scanned);
+				ok = false;
+			}
+		}
+		return ok;
+	}
+
+	private static List<String> activations(Rete rete, String rule) throws Exception
+	{
+		List<String> list = new ArrayList<String>();
+		for (Enumeration<?> e = rete.listActivations(); e.hasMoreElements();) {
+			Activation act = (Activation) e.nextElement();
+			if (act.isInactive() || !act.getRule().getName().equals(rule)) {
+				continue;
+			}
+			Token t = act.getToken();
+			StringBuffer sb = new StringBuffer();
+			for (int i = 0; i < t.size(); i++) {
+				sb.append(t.fact(i).getFactId()).append(' ');
+			}
+			list.add(sb.toString().trim());
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	private static Fact randomFact(Rete rete, Random random) throws Exception
+	{
+		String w1 = WORDS[random.nextInt(WORDS.length)];
+		String w2 = WORDS[random.nextInt(WORDS.length)];
+		switch (random.nextInt(3)) {
+		case 0:
+			return newFact(rete, "_td", "nsubj", w1, w2);
+		case 1:
+			return newFact(rete, "_fact", w1, random.nextBoolean() ? "rdf:type" : "has", random.nextBoolean()
+					? TYPES[random.nextInt(TYPES.length)] : w2);
+		default:
+			return newFact(rete, "_lema", w1, w2);
+		}
+	}
+
+	private static Fact newFact(Rete rete, String head, String... slots) throws Exception
+	{
+		ValueVector vv = new ValueVector();
+		for (int i = 0; i < slots.length; i++) {
+			vv.add(new Value(slots[i], RU.ATOM));
+		}
+		Fact f = new Fact(head, rete);
+		f.set(new Value(vv, RU.LIST), 0);
+		return f;
+	}
+}
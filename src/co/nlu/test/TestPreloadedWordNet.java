@@ -0,0 +1,74 @@
+package co.nlu.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import co.nlu.process.PreloadedWordNet;
+
+/**
+ * PreloadedWordNet over a small dictionary in WordNet's file format: it must
+ * apply WordNetAgent's exceptions, then WordNet's exception lists, then the
+ * adjective suffix rules checked against the index, and keep the word's
+ * capitalization, as WordNetAgent.getLemma does.
+ */
+public class TestPreloadedWordNet {
+	private static final String LICENCE = "  1 This software and database is being provided to you, the LICENSEE, by\n"
+			+ "  2 Princeton University under the following license.\n";
+
+	private static final String[][] CASES = {
+			// WordNetAgent's own exceptions come first
+			{ "better", "JJR", "good" }, { "better", "RBR", "well" }, { "most", "RBS", "much" },
+			// the exception list gives the root, sorted in with the word if it is indexed
+			{ "happier", "JJR", "happy" }, { "bigger", "JJR", "big" }, { "worse", "JJR", "bad" },
+			// suffix rules, confirmed by the index
+			{ "greener", "JJR", "green" }, { "largest", "JJS", "large" }, { "Faster", "JJR", "Fast" },
+			{ "FASTEST", "JJS", "FAST" },
+			// no rule confirmed by the index: the first stem tried
+			{ "blahest", "JJS", "blah" },
+			// adverbs have no suffix rules
+			{ "fast", "RB", "fast" }, { "quickly", "RB", "quickly" }, { "harder", "RBR", "hard" },
+			{ "red", "JJ", "red" } };
+
+	public static void main(String[] a) throws Exception
+	{
+		File dir = File.createTempFile("wn-dict", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			write(dir, "index.adj", LICENCE + "bad a 14 5 ! & ^ = + 14 5 01125429\n"
+					+ "big a 13 4 ! & ^ = 13 2 01382086\n" + "fast a 10 4 ! & ^ = 10 2 00976508\n"
+					+ "green a 8 2 & ^ 8 1 00375969\n" + "happy a 4 3 ! & ^ 4 1 01148283\n"
+					+ "large a 8 4 ! & ^ = 8 2 01382086\n" + "red a 3 2 & ^ 3 1 00381097\n");
+			write(dir, "index.adv", LICENCE + "fast r 2 1 \\ 2 2 00086000\n" + "hard r 9 2 \\ 9 3 00035868\n"
+					+ "quickly r 3 1 \\ 3 2 00085811\n");
+			write(dir, "adj.exc", "bigger big\nhappier happy\nworse bad\n");
+			write(dir, "adv.exc", "harder hard\nbest well\n");
+
+			PreloadedWordNet wordnet = new PreloadedWordNet(dir);
+			TestUtil.check(wordnet.getAdjectiveCount() == 7 && wordnet.getAdverbCount() == 3, "read "
+					+ wordnet.getAdjectiveCount() + " adjectives and " + wordnet.getAdverbCount() + " adverbs");
+			for (String[] c : CASES) {
+				String lemma = wordnet.getLemma(c[0], c[1]);
+				TestUtil.check(c[2].equals(lemma), c[0] + "/" + c[1] + " gave " + lemma + ", not " + c[2]);
+			}
+			TestUtil.check(wordnet.getLemma("dogs", "NNS") == null, "a noun was looked up");
+			System.out.println("OK: " + CASES.length + " lemmas match WordNetAgent's rules");
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static void write(File dir, String name, String text) throws IOException
+	{
+		FileWriter out = new FileWriter(new File(dir, name));
+		try {
+			out.write(text);
+		} finally {
+			out.close();
+		}
+	}
+}
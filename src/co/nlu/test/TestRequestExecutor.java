@@ -0,0 +1,144 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import coc.Agent;
+import coc.AgentPool;
+import coc.agent.engine.JessEvent;
+import coc.agent.engine.JessListener;
+import coc.agent.engine.Rete;
+import coc.ws.nlu.RequestExecutor;
+import coc.ws.nlu.WSProcessor;
+import co.nlu.utils.FileUtil;
+
+/**
+ * WSProcessor.process2Async must give what process2 gives, for many requests
+ * at once; a RequestExecutor must refuse requests over its limit; and a
+ * request that times out must have its runaway inference halted, or never
+ * start it if the timeout comes first.
+ */
+public class TestRequestExecutor {
+	public static void main(String[] a) throws Exception
+	{
+		String text = FileUtil.readFileToString(TestUtil.document(a));
+		System.setProperty(RequestExecutor.MAX_IN_FLIGHT_PROPERTY, "8");
+		WSProcessor ws = new WSProcessor();
+
+		String expected = ws.process2(text);
+		TestUtil.check(expected.contains("rdf:type :__SOLUTION"), "process2 gave no individuals: " + expected);
+		List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 8; i++) {
+			results.add(ws.process2Async(text));
+		}
+		for (CompletableFuture<String> result : results) {
+			TestUtil.check(expected.equals(result.get()), "an async result differs from process2");
+		}
+		System.out.println("OK: 8 async requests match process2, " + expected.length() + " characters");
+
+		final CountDownLatch release = new CountDownLatch(1);
+		RequestExecutor one = new RequestExecutor(1, 60000);
+		CompletableFuture<String> held = one.submit(new Callable<String>() {
+			public String call() throws Exception {
+				release.await();
+				return "done";
+			}
+		}, new Runnable() {
+			public void run() {
+			}
+		});
+		CompletableFuture<String> refused = one.submit(new Callable<String>() {
+			public String call() {
+				return "ran";
+			}
+		}, new Runnable() {
+			public void run() {
+			}
+		});
+		TestUtil.check(cause(refused) instanceof RejectedExecutionException,
+				"a request over the limit was not refused");
+		release.countDown();
+		TestUtil.check("done".equals(held.get()), "the held request failed");
+		System.out.println("OK: a request over the limit is refused");
+
+		final Rete rete = new Rete();
+		rete.executeCommand("(defrule loop ?f <- (count ?n) => (retract ?f) (assert (count (+ ?n 1))))");
+		rete.executeCommand("(assert (count 0))");
+		final CountDownLatch stopped = new CountDownLatch(1);
+		RequestExecutor timed = new RequestExecutor(1, 200);
+		long t0 = System.currentTimeMillis();
+		CompletableFuture<Integer> runaway = timed.submit(new Callable<Integer>() {
+			public Integer call() throws Exception {
+				try {
+					return rete.run();
+				} finally {
+					stopped.countDown();
+				}
+			}
+		}, new Runnable() {
+			public void run() {
+				rete.halt();
+			}
+		});
+		TestUtil.check(cause(runaway) instanceof TimeoutException, "the runaway request did not time out");
+		stopped.await();
+		long elapsed = System.currentTimeMillis() - t0;
+		TestUtil.check(timed.getInFlight() == 0 || waitIdle(timed), "the timed-out request still holds its permit");
+		System.out.println("OK: the runaway request timed out and its engine stopped after " + elapsed + " ms");
+
+		// with every pooled Agent held, the request times out waiting for one
+		final AtomicInteger fired = new AtomicInteger();
+		JessListener counter = new JessListener() {
+			public void eventHappened(JessEvent je) {
+				if (je.getType() == JessEvent.DEFRULE_FIRED) {
+					fired.incrementAndGet();
+				}
+			}
+		};
+		AgentPool pool = AgentPool.shared();
+		List<Agent> busy = new ArrayList<Agent>();
+		for (int i = 0; i < pool.getSize(); i++) {
+			Agent agent = pool.borrow();
+			agent.getEngine().addJessListener(counter);
+			agent.getEngine().setEventMask(agent.getEngine().getEventMask() | JessEvent.DEFRULE_FIRED);
+			busy.add(agent);
+		}
+		RequestExecutor quick = new RequestExecutor(1, 200);
+		CompletableFuture<String> late = new WSProcessor(quick).process2Async(text);
+		TestUtil.check(cause(late) instanceof TimeoutException, "the waiting request did not time out");
+		for (Agent agent : busy) {
+			pool.release(agent);
+		}
+		TestUtil.check(waitIdle(quick), "the timed-out request did not finish");
+		TestUtil.check(fired.get() == 0, "a request that timed out before it started fired " + fired.get()
+				+ " rules");
+		TestUtil.check(expected.equals(ws.process2(text)) && fired.get() > 0, "the pooled Agents fired no rules");
+		System.out.println("OK: a request that timed out before its inference started fired no rules");
+		System.exit(0);
+	}
+
+	private static Throwable cause(CompletableFuture<?> f) throws InterruptedException
+	{
+		try {
+			f.get();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+	private static boolean waitIdle(RequestExecutor executor) throws InterruptedException
+	{
+		for (int i = 0; i < 100 && executor.getInFlight() > 0; i++) {
+			Thread.sleep(10);
+		}
+		return executor.getInFlight() == 0;
+	}
+}
@@ -0,0 +1,66 @@
+package co.nlu.test;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.Rete;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+
+/**
+ * Compares asserting NLU-shaped facts into the network built from
+ * rule/nlu.clp with every fact offered to every root (broadcast) against
+ * facts sent only to the roots for their head (dispatch).
+ */
+public class TestRootDispatch {
+	private static final String[] TDS = { "nsubj", "dobj", "amod", "advmod", "det", "prep_of" };
+
+	public static void main(String[] a) throws Exception
+	{
+		int sentences = a.length > 0 ? Integer.parseInt(a[0]) : 200;
+		Agent agent = new Agent();
+		Rete rete = agent.getEngine();
+		rete.executeCommand("(unwatch all)");
+
+		// warm up both paths
+		run(rete, sentences, false);
+		run(rete, sentences, true);
+
+		for (int i = 0; i < 3; i++) {
+			long broadcast = run(rete, sentences, false);
+			long dispatch = run(rete, sentences, true);
+			System.out.println(String.format("%d sentences: broadcast %8.3f ms, dispatch %8.3f ms",
+					sentences, broadcast / 1e6, dispatch / 1e6));
+		}
+	}
+
+	private static long run(Rete rete, int sentences, boolean dispatch) throws Exception
+	{
+		rete.reset();
+		rete.setRootDispatch(dispatch);
+		long t0 = System.nanoTime();
+		for (int s = 1; s <= sentences; s++) {
+			for (int k = 1; k <= 8; k++) {
+				String word = "w" + k + "_" + s + "x" + k;
+				rete.assertFact(newFact(rete, "_pos", word, k % 2 == 0 ? "NN" : "VB"));
+				rete.assertFact(newFact(rete, "_lema", word, "w" + k));
+				if (k > 1) {
+					rete.assertFact(newFact(rete, "_td", TDS[k % TDS.length],
+							"w" + (k - 1) + "_" + s + "x" + (k - 1), word));
+				}
+			}
+		}
+		return System.nanoTime() - t0;
+	}
+
+	private static Fact newFact(Rete rete, String head, String... slots) throws Exception
+	{
+		ValueVector vv = new ValueVector();
+		for (int i = 0; i < slots.length; i++) {
+			vv.add(new Value(slots[i], RU.ATOM));
+		}
+		Fact f = new Fact(head, rete);
+		f.set(new Value(vv, RU.LIST), 0);
+		return f;
+	}
+}
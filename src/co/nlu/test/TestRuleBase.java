@@ -0,0 +1,89 @@
+package co.nlu.test;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import coc.Agent;
+import coc.RuleBase;
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.Rete;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+
+/**
+ * Engines copied from the compiled rule base against engines parsed from
+ * rule/nlu.clp: the same facts must give the same fact-list, and a copy
+ * must not see what another copy was given. Also times both ways of
+ * getting an engine.
+ */
+public class TestRuleBase {
+	private static final String RULEFILE = "rule/nlu.clp";
+	private static final String[] TDS = { "nsubj", "dobj", "amod", "advmod", "det", "prep_of" };
+
+	public static void main(String[] a) throws Exception
+	{
+		int sentences = a.length > 0 ? Integer.parseInt(a[0]) : 20;
+		RuleBase base = RuleBase.forFile(RULEFILE);
+
+		List<String> parsed = run(new Agent(RULEFILE).getEngine(), sentences);
+		Rete first = base.newEngine();
+		List<String> copied = run(first, sentences);
+		// a second copy, after the first has fired its rules
+		List<String> again = run(base.newEngine(), sentences);
+
+		TestUtil.check(parsed.equals(copied) && parsed.equals(again), "parsed " + parsed.size() + " facts, copies "
+				+ copied.size() + " and " + again.size());
+		System.out.println("OK: " + parsed.size() + " facts");
+
+		for (int i = 0; i < 3; i++) {
+			long t0 = System.nanoTime();
+			for (int j = 0; j < 20; j++) {
+				new Agent(RULEFILE);
+			}
+			long t1 = System.nanoTime();
+			for (int j = 0; j < 20; j++) {
+				base.newEngine();
+			}
+			long t2 = System.nanoTime();
+			System.out.println(String.format("parse %8.3f ms/engine, copy %8.3f ms/engine", (t1 - t0) / 20e6,
+					(t2 - t1) / 20e6));
+		}
+	}
+
+	private static List<String> run(Rete rete, int sentences) throws Exception
+	{
+		rete.executeCommand("(unwatch all)");
+		rete.reset();
+		for (int s = 1; s <= sentences; s++) {
+			for (int k = 1; k <= 8; k++) {
+				String word = "w" + k + "_" + s + "x" + k;
+				rete.assertFact(newFact(rete, "_pos", word, k % 2 == 0 ? "NN" : "VB"));
+				rete.assertFact(newFact(rete, "_lema", word, "w" + k));
+				if (k > 1) {
+					rete.assertFact(newFact(rete, "_td", TDS[k % TDS.length],
+							"w" + (k - 1) + "_" + s + "x" + (k - 1), word));
+				}
+			}
+		}
+		rete.run();
+
+		List<String> facts = new ArrayList<String>();
+		for (Enumeration<?> e = rete.listFacts(); e.hasMoreElements();) {
+			facts.add(((Fact) e.nextElement()).toString());
+		}
+		return facts;
+	}
+
+	private static Fact newFact(Rete rete, String head, String... slots) throws Exception
+	{
+		ValueVector vv = new ValueVector();
+		for (int i = 0; i < slots.length; i++) {
+			vv.add(new Value(slots[i], RU.ATOM));
+		}
+		Fact f = new Fact(head, rete);
+		f.set(new Value(vv, RU.LIST), 0);
+		return f;
+	}
+}
@@ -0,0 +1,107 @@
+package co.nlu.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import coc.agent.engine.RU;
+import coc.agent.engine.Rete;
+import coc.agent.engine.TermDictionary;
+import coc.agent.engine.Value;
+
+/**
+ * TermDictionary must give a term one id, from any number of threads, and
+ * one String; it must take in the symbols of rules but not the atoms of the
+ * facts asserted; and atoms must compare the same with or without ids, and
+ * keep them through serialization.
+ */
+public class TestTermDictionary {
+	public static void main(String[] a) throws Exception
+	{
+		int type = TermDictionary.intern("rdf:type");
+		TestUtil.check(TermDictionary.intern(new String("rdf:type")) == type, "a term was given two ids");
+		TestUtil.check(TermDictionary.canonical(new String("rdf:type")) == TermDictionary.term(type),
+				"a term has two copies");
+		TestUtil.check(TermDictionary.lookup("never-interned-term") == -1, "lookup interned a term");
+		String never = new String("never-interned-term");
+		TestUtil.check(TermDictionary.canonical(never) == never && TermDictionary.lookup(never) == -1,
+				"canonical interned a term");
+		System.out.println("OK: one id and one copy per term");
+
+		final int base = TermDictionary.size();
+		final int[][] ids = new int[8][20000];
+		final AtomicBoolean failed = new AtomicBoolean();
+		Thread[] threads = new Thread[ids.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int[] mine = ids[t];
+			threads[t] = new Thread() {
+				public void run()
+				{
+					for (int i = 0; i < mine.length; i++) {
+						mine[i] = TermDictionary.intern("term-" + i);
+						if (!TermDictionary.term(mine[i]).equals("term-" + i)) {
+							failed.set(true);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		TestUtil.check(!failed.get(), "a thread read back the wrong term");
+		for (int t = 1; t < ids.length; t++) {
+			for (int i = 0; i < ids[t].length; i++) {
+				TestUtil.check(ids[t][i] == ids[0][i], "threads were given different ids for term-" + i);
+			}
+		}
+		TestUtil.check(TermDictionary.size() == base + ids[0].length, (TermDictionary.size() - base) + " terms for "
+				+ ids[0].length);
+		System.out.println("OK: 8 threads interned " + ids[0].length + " terms with the same ids");
+
+		// made before the rule below interns its symbol
+		Value early = new Value(new String("td-symbol"), RU.ATOM);
+		Rete rete = new Rete();
+		rete.executeCommand("(defrule td-rule (_fact ?x rdf:type td-symbol) => (assert (td-seen ?x)))");
+		int size = TermDictionary.size();
+		rete.executeCommand("(assert (_fact John_1x1 rdf:type td-symbol))");
+		rete.run();
+		TestUtil.check(TermDictionary.lookup("td-symbol") >= 0 && TermDictionary.lookup("td-rule") >= 0,
+				"the rule's symbols were not interned");
+		TestUtil.check(TermDictionary.size() == size && TermDictionary.lookup("John_1x1") == -1,
+				"asserting and firing interned " + (TermDictionary.size() - size) + " terms");
+		System.out.println("OK: rules intern their symbols, facts intern nothing");
+
+		Value symbol = new Value(new String("td-symbol"), RU.ATOM);
+		TestUtil.check(symbol.termId() == TermDictionary.lookup("td-symbol")
+				&& symbol.atomValue(null) == TermDictionary.term(symbol.termId()), "a symbol atom has no id");
+		TestUtil.check(early.termId() == -1 && early.equals(symbol) && symbol.equals(early),
+				"an atom made before its symbol was interned compares wrongly");
+		Value john = new Value(new String("John_1x1"), RU.ATOM);
+		Value again = new Value(new String("John_1x1"), RU.ATOM);
+		Value str = new Value("John_1x1", RU.STRING);
+		TestUtil.check(john.termId() == -1 && john.equals(again), "equal atoms differ");
+		TestUtil.check(!john.equals(str), "an atom and a string compare wrongly");
+		TestUtil.check(!john.equals(new Value("John_1x2", RU.ATOM)) && !symbol.equals(new Value("rdf:type", RU.ATOM)),
+				"different atoms are equal");
+
+		Value read = copy(symbol);
+		TestUtil.check(read.equals(symbol) && read.termId() == symbol.termId()
+				&& read.atomValue(null) == symbol.atomValue(null), "a serialized symbol lost its term");
+		read = copy(john);
+		TestUtil.check(read.equals(john) && read.termId() == -1, "a serialized atom compares wrongly");
+		System.out.println("OK: atoms compare by term id or by text, and keep it when serialized");
+	}
+
+	private static Value copy(Value v) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(v);
+		out.close();
+		return (Value) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+}
@@ -0,0 +1,54 @@
+package co.nlu.test;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Vector;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.convertion.TurtleWriter;
+import coc.convertion.VelocityEngineUtils;
+import co.nlu.models.Sentence;
+
+/**
+ * TurtleWriter must write what Velocity makes of Ontology.vm: its section
+ * writer must remove special characters as convertSpecialChar does, however
+ * the text is split into writes, and a document's whole OWL must match.
+ */
+public class TestTurtleWriter {
+	private static final String[] SECTIONS = { "", "\n", "\n\n", ":a :b :c .\n", ":a :b :c .\n\n:d :e :f .\n\n",
+			"\n:a#b :c@d 'e' .\n", ":a :b \"it's #1 @home\" *x* .\n", ":a :b \"one \" :c \"two\" `d` .", "   \n:a\n  \n",
+			":x rdfs:comment \"John's dog\" .\n\n\n:y :z :w .\n" };
+
+	public static void main(String[] a) throws Exception
+	{
+		for (String section : SECTIONS) {
+			for (int size = 1; size <= 7; size += 3) {
+				StringWriter out = new StringWriter();
+				TurtleWriter.SectionWriter writer = new TurtleWriter.SectionWriter(out);
+				for (int i = 0; i < section.length(); i += size) {
+					writer.write(section.substring(i, Math.min(section.length(), i + size)));
+				}
+				writer.finish();
+				TestUtil.check(VelocityEngineUtils.convertSpecialChar(section).equals(out.toString()),
+						"section " + escape(section) + " became " + escape(out.toString()));
+			}
+		}
+		System.out.println("OK: " + SECTIONS.length + " sections converted as convertSpecialChar does");
+
+		Map<Integer, Sentence> sentences = TestUtil.readSentences(TestUtil.document(a));
+		Vector<Fact> vec = TestUtil.inferredFacts(new Agent(), sentences);
+		String velocity = VelocityEngineUtils.mergeTemplateIntoString("Ontology.vm",
+				VelocityEngineUtils.getInputMap(vec, sentences));
+		StringWriter streamed = new StringWriter();
+		VelocityEngineUtils.writeOWL(vec, sentences, streamed);
+		TestUtil.check(velocity.equals(streamed.toString()), "the streamed OWL differs from Velocity's");
+		System.out.println("OK: " + velocity.length() + " characters of OWL match Velocity's");
+		System.exit(0);
+	}
+
+	private static String escape(String s)
+	{
+		return "\"" + s.replace("\n", "\\n") + "\"";
+	}
+}
@@ -0,0 +1,86 @@
+package co.nlu.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import coc.Agent;
+import coc.agent.engine.Fact;
+import coc.agent.engine.ReteException;
+import co.nlu.models.Sentence;
+import co.nlu.process.CoreNLPReader;
+import co.nlu.process.Processor;
+import co.nlu.utils.FileUtil;
+
+/**
+ * What the tests share: the document they run on, the facts it leaves once
+ * the rules have run, and the check that ends a test when it fails.
+ */
+public class TestUtil {
+	/** The document a test runs on if it is given none */
+	public static final String DOCUMENT = "src/co/nlu/resource/t1.xml";
+
+	/**
+	 * @return The document named on the command line, or DOCUMENT
+	 */
+	public static String document(String[] a)
+	{
+		return a.length > 0 ? a[0] : DOCUMENT;
+	}
+
+	/**
+	 * @return The sentences of a CoreNLP document, keyed by sentence id
+	 */
+	public static Map<Integer, Sentence> readSentences(String file) throws Exception
+	{
+		return new CoreNLPReader(new StringReader(FileUtil.readFileToString(file))).readAll();
+	}
+
+	/**
+	 * @return (initial-fact) and the facts of every sentence, built for agent
+	 * as Processor builds them
+	 */
+	public static List<Fact> newFacts(Agent agent, Map<Integer, Sentence> sentences) throws ReteException
+	{
+		List<Fact> facts = new ArrayList<Fact>();
+		new Processor().addDocumentFacts(agent, sentences, facts);
+		return facts;
+	}
+
+	/**
+	 * Assert the document's facts in agent and run the rules.
+	 * @return Every fact agent then holds
+	 */
+	public static Vector<Fact> inferredFacts(Agent agent, Map<Integer, Sentence> sentences) throws ReteException
+	{
+		agent.assertAll(newFacts(agent, sentences));
+		agent.inference();
+		return listFacts(agent);
+	}
+
+	/**
+	 * @return Every fact agent holds, in id order
+	 */
+	public static Vector<Fact> listFacts(Agent agent)
+	{
+		Vector<Fact> facts = new Vector<Fact>();
+		for (Enumeration<?> e = agent.getEngine().listFacts(); e.hasMoreElements();) {
+			facts.add((Fact) e.nextElement());
+		}
+		return facts;
+	}
+
+	/**
+	 * Print failure and exit with status 1 unless ok.
+	 */
+	public static void check(boolean ok, String failure)
+	{
+		if (!ok) {
+			System.out.println("FAILED: " + failure);
+			System.exit(1);
+		}
+	}
+}
@@ -9,6 +9,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Enumeration;
 
 import co.nlu.utils.Log;
@@ -17,9 +18,12 @@ import coc.agent.engine.Fact;
 import coc.agent.engine.Jesp;
 import coc.agent.engine.JessEvent;
 import coc.agent.engine.JessListener;
+import coc.agent.engine.RU;
 import coc.agent.engine.Rete;
 import coc.agent.engine.ReteException;
 import coc.agent.engine.Userpackage;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
 import coc.agent.model.AgentPackage;
 import coc.utils.PrintWriterWithTime;
 
@@ -34,38 +38,80 @@ public class Agent implements Serializable, JessListener{
 	private Jesp jesp;
 	private Rete rete;
 	private static Agent _self = null;
+	// shared by all agents, so they don't each hold two open files
+	private static PrintWriter _log = null;
+	private static PrintWriter _factLog = null;
 	
+	/**
+	 * An agent whose engine is a copy of the shared, precompiled rule base for
+	 * rule/nlu.clp. Falls back to parsing the rule file if that fails.
+	 */
 	public Agent(){
-		PrintWriter pw;
-		PrintWriter pw_fact;
 		try {
-			pw = new PrintWriterWithTime(new FileWriter("logs/agent.log" , true));
-			pw_fact = new PrintWriterWithTime(new FileWriter("logs/allfacts.log" , true));
+			rete = RuleBase.forFile(rulefilename).newEngine();
 		} catch (Exception ex) {
-			pw = new PrintWriter(System.out);
-			pw_fact = new PrintWriter(System.out);
+			ex.printStackTrace();
+			log(" failed to copy rules from " + rulefilename + " | " + ex.getMessage());
 		}
-		
+		if (rete != null) {
+			initRouters();
+		} else {
+			loadEngine(rulefilename);
+		}
+	}
+
+	/**
+	 * An agent with an engine of its own, parsed and compiled from rulefile.
+	 */
+	public Agent(String rulefile){
+		loadEngine(rulefile);
+	}
+
+	private void loadEngine(String rulefile){
 		rete = new Rete();
-		
-		rete.addOutputRouter("t", pw);
-		rete.addOutputRouter("WSTDOUT", pw);
-		rete.addOutputRouter("WSTDERR", pw);
-		
-		rete.addOutputRouter("WSTDOUT_FACT", pw_fact);
+		initRouters();
 		/*
 		 * if Only use jess.jar and do not want to change engine core code.
 		 * you can new a class(XXXFunctions) which implements Userpackage and bundle it with Engine through ".add(rete)"
 		 */
 		new AgentPackage(this).add(rete);//Add Cyber defined function to this package
 		try {
-			this.initRuleBase(rulefilename);
+			this.initRuleBase(rulefile);
 		} catch (Exception ex) {
 			ex.printStackTrace();
-			log(" failed to load rule from " + rulefilename + " | " + ex.getMessage());
+			log(" failed to load rule from " + rulefile + " | " + ex.getMessage());
+		}
+	}
+
+	private synchronized static void openLogs(){
+		if (_log != null) {
+			return;
+		}
+		try {
+			_log = new PrintWriterWithTime(new FileWriter("logs/agent.log" , true));
+			_factLog = new PrintWriterWithTime(new FileWriter("logs/allfacts.log" , true));
+		} catch (Exception ex) {
+			_log = new PrintWriter(System.out);
+			_factLog = new PrintWriter(System.out);
 		}
 	}
 
+	private void initRouters(){
+		initRouters(rete);
+	}
+
+	/**
+	 * Send an engine's output to the shared agent logs rather than stdout.
+	 */
+	static void initRouters(Rete rete){
+		openLogs();
+		rete.addOutputRouter("t", _log);
+		rete.addOutputRouter("WSTDOUT", _log);
+		rete.addOutputRouter("WSTDERR", _log);
+		
+		rete.addOutputRouter("WSTDOUT_FACT", _factLog);
+	}
+
 	public synchronized static Agent singleton(){
 		if(_self == null){
 			_self = new Agent();
@@ -171,7 +217,9 @@ public class Agent implements Serializable, JessListener{
 		if (je.getType() == JessEvent.BLOAD) {
 			// Reattach parser to engine
 			rete = (Rete) je.getObject();
-			jesp.setEngine(rete);
+			if (jesp != null) {
+				jesp.setEngine(rete);
+			}
 
 			// Reinstall things not loaded by Rete constructor
 			try {
@@ -187,6 +235,68 @@ public class Agent implements Serializable, JessListener{
 	public void assertFact(String fact){
 		executeCommand("(assert " + fact + ")");
 	}
+
+	/**
+	 * Assert an ordered fact such as (_pos John_1x1 NNP) built directly from
+	 * its head and values, without formatting and parsing an assert command.
+	 * A value that reads as an integer or a float becomes one, as it would in
+	 * the parser; anything else is an atom, whatever characters it contains.
+	 * @return the fact-id, or -1 if the fact was already there or failed
+	 */
+	public int assertOrdered(String head, String... values){
+		try {
+			return rete.assertFact(newOrdered(head, values));
+		} catch (ReteException re) {
+			re.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Build an ordered fact the way assertOrdered() does, without asserting
+	 * it, so that a whole document's facts can go in with assertAll().
+	 */
+	public Fact newOrdered(String head, String... values) throws ReteException {
+		ValueVector vv = new ValueVector(values.length);
+		for (int i = 0; i < values.length; i++) {
+			vv.add(toValue(values[i]));
+		}
+		Fact fact = new Fact(head, rete);
+		fact.set(new Value(vv, RU.LIST), 0);
+		return fact;
+	}
+
+	/**
+	 * Assert a list of facts in order, in one pass through the engine.
+	 * @return the fact-ids, -1 for any fact already there, or null if the
+	 * batch failed
+	 */
+	public int[] assertAll(Collection<Fact> facts){
+		try {
+			return rete.assertAll(facts);
+		} catch (ReteException re) {
+			re.printStackTrace();
+			return null;
+		}
+	}
+
+	// Same typing as the tokenizer gives a lone word
+	private static Value toValue(String s) throws ReteException {
+		if (s.length() > 1 || (s.length() == 1 && Character.isDigit(s.charAt(0)))) {
+			char ch = s.charAt(0);
+			if (Character.isDigit(ch) || ch == '-' || ch == '.' || ch == '+') {
+				try {
+					return new Value(Integer.parseInt(s, 10), RU.INTEGER);
+				} catch (NumberFormatException nfe) {
+				}
+				try {
+					return new Value(Double.valueOf(s).doubleValue(), RU.FLOAT);
+				} catch (NumberFormatException nfe) {
+				}
+			}
+		}
+		return new Value(s, RU.ATOM);
+	}
 	
 	public void executeCommand(String cmd){
 		try {
@@ -224,6 +334,15 @@ public class Agent implements Serializable, JessListener{
 		
 		this.reteRunning = false;
 	}
+
+	/**
+	 * Remove all facts and activations, leaving only (initial-fact); the
+	 * rules stay compiled.
+	 */
+	public void reset() throws ReteException {
+		this.reteRunning = false;
+		rete.reset();
+	}
 	
 	//TODO
 	public static void log(String info){
@@ -0,0 +1,161 @@
+package coc;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Set;
+
+import co.nlu.utils.Log;
+import coc.agent.engine.ReteException;
+
+/**
+ * A fixed-size pool of Agents for request threads. Agents are created on
+ * demand, up to the pool size, from the shared RuleBase; a caller that finds
+ * them all in use waits for one to be returned. Every Agent handed out by
+ * borrow() has just been reset, so it holds no facts or activations from its
+ * previous user, and its rules are never reparsed.
+ *
+ * <pre>
+ * Agent agent = AgentPool.shared().borrow();
+ * try {
+ *     ...
+ * } finally {
+ *     AgentPool.shared().release(agent);
+ * }
+ * </pre>
+ */
+public class AgentPool {
+	/** System property holding the size of the shared pool */
+	public static final String SIZE_PROPERTY = "nlu.agentpool.size";
+
+	private static AgentPool _shared = null;
+
+	private final int size;
+	private final LinkedList<Agent> idle = new LinkedList<Agent>();
+	// Agents handed out and not yet released
+	private final Set<Agent> borrowed = Collections.newSetFromMap(new IdentityHashMap<Agent, Boolean>());
+	private int created = 0;
+
+	/**
+	 * @param size The most Agents this pool will create
+	 */
+	public AgentPool(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Agent pool size must be at least 1: " + size);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * The pool shared by the web-service path. Its size is the system property
+	 * nlu.agentpool.size, or the number of processors.
+	 */
+	public synchronized static AgentPool shared() {
+		if (_shared == null) {
+			_shared = new AgentPool(Integer.getInteger(SIZE_PROPERTY, Runtime.getRuntime().availableProcessors()));
+		}
+		return _shared;
+	}
+
+	/**
+	 * Take a clean Agent, waiting as long as it takes for one to be free.
+	 */
+	public Agent borrow() throws InterruptedException, ReteException {
+		return borrow(0);
+	}
+
+	/**
+	 * Take a clean Agent, waiting at most timeout milliseconds (0 waits
+	 * forever) for one to be free.
+	 * @return The Agent, or null if none became free in time
+	 */
+	public Agent borrow(long timeout) throws InterruptedException, ReteException {
+		Agent agent;
+		synchronized (this) {
+			long deadline = System.currentTimeMillis() + timeout;
+			while (idle.isEmpty() && created >= size) {
+				if (timeout == 0) {
+					wait();
+				} else {
+					long left = deadline - System.currentTimeMillis();
+					if (left <= 0) {
+						return null;
+					}
+					wait(left);
+				}
+			}
+			if (idle.isEmpty()) {
+				created++;
+				agent = null;
+			} else {
+				agent = idle.removeFirst();
+			}
+		}
+
+		boolean ready = false;
+		try {
+			if (agent == null) {
+				agent = newAgent();
+			}
+			agent.reset();
+			ready = true;
+		} catch (ReteException re) {
+			Log.debug("Agent failed to reset: " + re.getMessage());
+			throw re;
+		} finally {
+			synchronized (this) {
+				if (ready) {
+					borrowed.add(agent);
+				} else {
+					// the agent is dropped; free its place for a new one
+					created--;
+					notify();
+				}
+			}
+		}
+		return agent;
+	}
+
+	/**
+	 * Give back an Agent taken from this pool. It is reset before it is handed
+	 * out again.
+	 * @exception IllegalArgumentException if the Agent is not out of this pool,
+	 * because it came from elsewhere or has already been released
+	 */
+	public synchronized void release(Agent agent) {
+		if (agent == null) {
+			return;
+		}
+		if (!borrowed.remove(agent)) {
+			throw new IllegalArgumentException("Agent was not borrowed from this pool, or was already released");
+		}
+		agent.clear();
+		idle.addLast(agent);
+		notify();
+	}
+
+	/**
+	 * Make a new Agent for the pool.
+	 */
+	protected Agent newAgent() {
+		return new Agent();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The number of Agents waiting in the pool
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The number of Agents this pool has created so far
+	 */
+	public synchronized int getCreatedCount() {
+		return created;
+	}
+}
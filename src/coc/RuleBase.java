@@ -0,0 +1,92 @@
+package coc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Hashtable;
+
+import co.nlu.utils.Log;
+import coc.agent.engine.Jesp;
+import coc.agent.engine.Rete;
+import coc.agent.engine.ReteException;
+import coc.agent.model.AgentPackage;
+
+/**
+ * A rule file parsed and compiled into a Rete network once. The compiled
+ * engine is only a template: it never gets facts. newEngine() hands out
+ * copies of its network (see Rete.copyRules()), each with its own empty
+ * working memory, which costs a fraction of parsing and compiling the rule
+ * file again.
+ *
+ * Instances are shared per file by forFile(); the rules are recompiled when
+ * the file's modification time changes.
+ */
+public class RuleBase {
+	private static final Hashtable<String, RuleBase> bases = new Hashtable<String, RuleBase>();
+
+	private final String rulefile;
+	private final long lastModified;
+	private final Rete template;
+
+	private RuleBase(String rulefile, long lastModified, Rete template) {
+		this.rulefile = rulefile;
+		this.lastModified = lastModified;
+		this.template = template;
+	}
+
+	/**
+	 * The shared rule base for a rule file, compiled on first use and again
+	 * whenever the file has changed since.
+	 */
+	public static synchronized RuleBase forFile(String rulefile) throws ReteException, IOException {
+		long modified = new File(rulefile).lastModified();
+		RuleBase base = bases.get(rulefile);
+		if (base == null || base.lastModified != modified) {
+			base = compile(rulefile);
+			bases.put(rulefile, base);
+		}
+		return base;
+	}
+
+	/**
+	 * Parse and compile a rule file into a new, unshared rule base.
+	 */
+	public static RuleBase compile(String rulefile) throws ReteException, IOException {
+		long modified = new File(rulefile).lastModified();
+		long start = System.currentTimeMillis();
+
+		Rete rete = new Rete();
+		Agent.initRouters(rete);
+		new AgentPackage(null).add(rete);
+
+		BufferedReader rfr = new BufferedReader(new FileReader(rulefile));
+		try {
+			Jesp jesp = new Jesp(rfr, rete);
+			do {
+				jesp.parse(false);
+			} while (rfr.ready());
+		} finally {
+			rfr.close();
+		}
+
+		Log.debug("Compiled " + rulefile + " in " + (System.currentTimeMillis() - start) + " ms");
+		return new RuleBase(rulefile, modified, rete);
+	}
+
+	/**
+	 * A new engine holding its own copy of the compiled rules, with no facts
+	 * and the default output routers. Safe to call from several threads.
+	 */
+	public Rete newEngine() throws ReteException {
+		return template.copyRules();
+	}
+
+	public String getRulefile() {
+		return rulefile;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+}
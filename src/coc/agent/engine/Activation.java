@@ -68,6 +68,11 @@ public class Activation implements Serializable
   private int m_seq;
   void setSequenceNumber(int i) { m_seq = i; }
 
+  // Order of arrival on the agenda; breaks ties between equal activations.
+  private int m_agendaSeq;
+  void setAgendaSequence(int i) { m_agendaSeq = i; }
+  int getAgendaSequence() { return m_agendaSeq; }
+
   void debugPrint(PrintWriter ps) throws ReteException 
   {
     m_rule.debugPrint(m_token, m_seq, ps);
@@ -0,0 +1,180 @@
+package coc.agent.engine;
+
+import java.io.Serializable;
+import java.util.Enumeration;
+import java.util.Vector;
+
+/** **********************************************************************
+ * The agenda: a binary heap of Activations ordered by a Strategy. Adding an
+ * activation and removing the next one to fire are both O(log n), where the
+ * old sorted Vector shifted the whole array for each.
+ * <P>
+ * Activations the Strategy considers equal fire most-recent-first, which is
+ * how the Vector-based strategies placed them.
+ * <P>
+ * Not synchronized; the engine locks on this object.
+ ********************************************************************** */
+
+class ActivationHeap implements Serializable
+{
+  private Activation[] m_heap = new Activation[64];
+  private int m_size;
+  private int m_nextSeq;
+  private Strategy m_strategy;
+
+  ActivationHeap(Strategy s)
+  {
+    m_strategy = s;
+  }
+
+  /**
+   * @return The number of activations, including cancelled ones not yet removed
+   */
+  final int size() { return m_size; }
+
+  /**
+   * Change the ordering of this agenda and reorder the existing activations.
+   * @param s The new strategy
+   */
+  void setStrategy(Strategy s)
+  {
+    m_strategy = s;
+    reorder();
+  }
+
+  /**
+   * Restore heap order after salience values have changed.
+   */
+  void reorder()
+  {
+    for (int i = m_size / 2 - 1; i >= 0; i--)
+      siftDown(i);
+  }
+
+  void add(Activation a)
+  {
+    if (m_size == m_heap.length)
+      {
+        Activation[] nh = new Activation[m_heap.length * 2];
+        System.arraycopy(m_heap, 0, nh, 0, m_size);
+        m_heap = nh;
+      }
+    a.setAgendaSequence(m_nextSeq++);
+    m_heap[m_size] = a;
+    siftUp(m_size++);
+  }
+
+  /**
+   * Remove and return the next activation to fire.
+   * @return The activation, or null if the agenda is empty
+   */
+  Activation pop()
+  {
+    if (m_size == 0)
+      return null;
+
+    Activation a = m_heap[0];
+    m_heap[0] = m_heap[--m_size];
+    m_heap[m_size] = null;
+    if (m_size > 0)
+      siftDown(0);
+    return a;
+  }
+
+  void clear()
+  {
+    for (int i=0; i<m_size; i++)
+      m_heap[i] = null;
+    m_size = 0;
+  }
+
+  /**
+   * Enumerate the activations in heap order, which is not firing order.
+   * @return The Enumeration
+   */
+  Enumeration<Activation> elements()
+  {
+    Vector<Activation> v = new Vector<Activation>(m_size);
+    for (int i=0; i<m_size; i++)
+      v.addElement(m_heap[i]);
+    return v.elements();
+  }
+
+  /**
+   * Return the activations in the order they would fire.
+   * @return A new Vector of activations
+   */
+  Vector<Activation> toSortedVector()
+  {
+    ActivationHeap copy = new ActivationHeap(m_strategy);
+    copy.m_heap = new Activation[Math.max(m_size, 1)];
+    System.arraycopy(m_heap, 0, copy.m_heap, 0, m_size);
+    copy.m_size = m_size;
+
+    Vector<Activation> v = new Vector<Activation>(m_size);
+    Activation a;
+    while ((a = copy.pop()) != null)
+      v.addElement(a);
+    return v;
+  }
+
+  // True if a should fire before b
+  private boolean before(Activation a, Activation b)
+  {
+    int c = compare(a, b);
+    if (c != 0)
+      return c < 0;
+    return a.getAgendaSequence() > b.getAgendaSequence();
+  }
+
+  private int compare(Activation a, Activation b)
+  {
+    if (m_strategy instanceof OrderedStrategy)
+      return ((OrderedStrategy) m_strategy).compare(a, b);
+
+    // Any other Strategy is asked where a would go in an agenda holding b
+    try
+      {
+        Vector<Activation> v = new Vector<Activation>(2);
+        v.addElement(b);
+        m_strategy.addActivation(a, v);
+        return v.elementAt(0) == a ? -1 : 1;
+      }
+    catch (ReteException re)
+      {
+        return 0;
+      }
+  }
+
+  private void siftUp(int i)
+  {
+    Activation a = m_heap[i];
+    while (i > 0)
+      {
+        int parent = (i - 1) >> 1;
+        if (!before(a, m_heap[parent]))
+          break;
+        m_heap[i] = m_heap[parent];
+        i = parent;
+      }
+    m_heap[i] = a;
+  }
+
+  private void siftDown(int i)
+  {
+    Activation a = m_heap[i];
+    int half = m_size >> 1;
+    while (i < half)
+      {
+        int child = 2 * i + 1;
+        int right = child + 1;
+        if (right < m_size && before(m_heap[right], m_heap[child]))
+          child = right;
+        if (!before(m_heap[child], a))
+          break;
+        m_heap[i] = m_heap[child];
+        i = child;
+      }
+    m_heap[i] = a;
+  }
+}
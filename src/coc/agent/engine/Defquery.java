@@ -18,6 +18,13 @@ public class Defquery extends HasLHS implements Serializable
     super(name, docstring, engine);
   }
 
+  Node copy(Rete engine) throws ReteException
+  {
+    Defquery n = (Defquery) super.copy(engine);
+    n.m_results = new Vector();
+    return n;
+  }
+
   /**
    * Recieve satisfied queries
    * @param token 
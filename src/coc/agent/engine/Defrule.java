@@ -233,6 +233,14 @@ public class Defrule extends HasLHS implements Serializable
         
   }
     
+  Node copy(Rete engine) throws ReteException
+  {
+    Defrule n = (Defrule) super.copy(engine);
+    n.m_activations = new Hashtable();
+    n.m_actions = (Vector) m_actions.clone();
+    return n;
+  }
+
   /**
    * Tell this rule to set the actions up for faster execution
    * @exception ReteException 
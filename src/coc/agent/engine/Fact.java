@@ -220,6 +220,16 @@ public class Fact extends ValueVector implements Serializable
 
   }
 
+  /**
+   * Hash on the head and the slot data, but not on the fact-id, so that a
+   * Fact can be used to find an identical one already on the fact-list.
+   * @return The hashcode
+   */
+  public int hashCode()
+  {
+    return 31 * m_name.hashCode() + super.hashCode();
+  }
+
 }
 
 
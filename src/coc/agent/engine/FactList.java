@@ -0,0 +1,238 @@
+package coc.agent.engine;
+
+import java.io.Serializable;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/** **********************************************************************
+ * The fact-list: an open-addressing table from fact-id to Fact, threaded
+ * with a doubly-linked list so that facts can be enumerated in assertion
+ * order. Lookup, insertion and removal by fact-id are all constant time.
+ * <P>
+ * Not synchronized; the engine locks on this object.
+ ********************************************************************** */
+
+class FactList implements Serializable
+{
+  /**
+   * One fact on the list. Removed entries keep their 'next' link so an
+   * Enumeration positioned on them can still move forward.
+   */
+  private static class Entry implements Serializable
+  {
+    Fact m_fact;
+    Entry m_prev, m_next;
+    boolean m_removed;
+
+    Entry(Fact f) { m_fact = f; }
+  }
+
+  private static final int EMPTY = -1;
+
+  private int[] m_ids;
+  private Entry[] m_entries;
+  private int m_size;
+  private Entry m_head, m_tail;
+
+  FactList()
+  {
+    this(64);
+  }
+
+  FactList(int capacity)
+  {
+    int cap = 16;
+    while (cap < capacity * 2)
+      cap <<= 1;
+    allocate(cap);
+  }
+
+  private void allocate(int cap)
+  {
+    m_ids = new int[cap];
+    m_entries = new Entry[cap];
+    for (int i=0; i<cap; i++)
+      m_ids[i] = EMPTY;
+  }
+
+  private static int mix(int id)
+  {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int slotOf(int id)
+  {
+    int mask = m_ids.length - 1;
+    int i = mix(id) & mask;
+    while (m_ids[i] != EMPTY)
+      {
+        if (m_ids[i] == id)
+          return i;
+        i = (i + 1) & mask;
+      }
+    return -1;
+  }
+
+  /**
+   * @return The number of facts on the list
+   */
+  final int size() { return m_size; }
+
+  /**
+   * Append a fact, which must already have its fact-id. The id must not
+   * already be on the list.
+   * @param f The fact
+   */
+  void add(Fact f)
+  {
+    if ((m_size + 1) * 2 > m_ids.length)
+      rehash(m_ids.length * 2);
+
+    Entry e = new Entry(f);
+    insert(f.getFactId(), e);
+
+    e.m_prev = m_tail;
+    if (m_tail == null)
+      m_head = e;
+    else
+      m_tail.m_next = e;
+    m_tail = e;
+    ++m_size;
+  }
+
+  /**
+   * Grow the table once so that it can hold the given number of facts
+   * without rehashing as they are added.
+   * @param n The number of facts the list will hold
+   */
+  void ensureCapacity(int n)
+  {
+    int cap = m_ids.length;
+    while (n * 2 > cap)
+      cap <<= 1;
+    if (cap != m_ids.length)
+      rehash(cap);
+  }
+
+  private void insert(int id, Entry e)
+  {
+    int mask = m_ids.length - 1;
+    int i = mix(id) & mask;
+    while (m_ids[i] != EMPTY)
+      i = (i + 1) & mask;
+    m_ids[i] = id;
+    m_entries[i] = e;
+  }
+
+  private void rehash(int cap)
+  {
+    int[] ids = m_ids;
+    Entry[] entries = m_entries;
+    allocate(cap);
+    for (int i=0; i<ids.length; i++)
+      if (ids[i] != EMPTY)
+        insert(ids[i], entries[i]);
+  }
+
+  /**
+   * @param id A fact-id
+   * @return The fact with this id, or null if none
+   */
+  Fact get(int id)
+  {
+    int i = slotOf(id);
+    return (i == -1) ? null : m_entries[i].m_fact;
+  }
+
+  /**
+   * Remove the fact with the given id.
+   * @param id A fact-id
+   * @return The removed fact, or null if none
+   */
+  Fact remove(int id)
+  {
+    int i = slotOf(id);
+    if (i == -1)
+      return null;
+
+    Entry e = m_entries[i];
+    deleteSlot(i);
+
+    if (e.m_prev == null)
+      m_head = e.m_next;
+    else
+      e.m_prev.m_next = e.m_next;
+    if (e.m_next == null)
+      m_tail = e.m_prev;
+    else
+      e.m_next.m_prev = e.m_prev;
+    e.m_removed = true;
+    --m_size;
+    return e.m_fact;
+  }
+
+  // Linear-probing deletion: shift later members of the cluster back so
+  // no tombstones are needed.
+  private void deleteSlot(int i)
+  {
+    int mask = m_ids.length - 1;
+    int j = i;
+    while (true)
+      {
+        j = (j + 1) & mask;
+        if (m_ids[j] == EMPTY)
+          break;
+        int k = mix(m_ids[j]) & mask;
+        if ((j > i && (k <= i || k > j)) || (j < i && (k <= i && k > j)))
+          {
+            m_ids[i] = m_ids[j];
+            m_entries[i] = m_entries[j];
+            i = j;
+          }
+      }
+    m_ids[i] = EMPTY;
+    m_entries[i] = null;
+  }
+
+  /**
+   * Remove every fact.
+   */
+  void clear()
+  {
+    for (Entry e = m_head; e != null; e = e.m_next)
+      e.m_removed = true;
+    if (m_size > 0)
+      allocate(m_ids.length);
+    m_head = m_tail = null;
+    m_size = 0;
+  }
+
+  /**
+   * Enumerate the facts in assertion order. Facts retracted during the
+   * enumeration are skipped; facts asserted during it are included.
+   * @return The Enumeration
+   */
+  Enumeration<Fact> elements()
+  {
+    return new Enumeration<Fact>() {
+        private Entry m_nextEntry = m_head;
+
+        public boolean hasMoreElements()
+        {
+          while (m_nextEntry != null && m_nextEntry.m_removed)
+            m_nextEntry = m_nextEntry.m_next;
+          return m_nextEntry != null;
+        }
+
+        public Fact nextElement()
+        {
+          if (!hasMoreElements())
+            throw new NoSuchElementException();
+          Fact f = m_nextEntry.m_fact;
+          m_nextEntry = m_nextEntry.m_next;
+          return f;
+        }
+      };
+  }
+}
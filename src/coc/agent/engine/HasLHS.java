@@ -31,6 +31,16 @@ public abstract class HasLHS extends Node implements Serializable
       s_initialFact = new Pattern("initial-fact", engine, 0);  
   }
 
+  // m_nodes is filled in by the ReteCompiler with the copied nodes
+  Node copy(Rete engine) throws ReteException
+  {
+    HasLHS n = (HasLHS) super.copy(engine);
+    n.m_engine = engine;
+    n.m_nodes = new Vector();
+    n.m_compilationTrace = null;
+    return n;
+  }
+
   void freeze() throws ReteException
   {
     // No patterns for this construct; we will fire on "initial-fact".
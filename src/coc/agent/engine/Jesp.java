@@ -162,6 +162,11 @@ public class Jesp implements Serializable
           }
 
         String head = m_jts.head();
+
+        // the atoms of a defrule, deftemplate etc. are symbols, shared by
+        // the facts that use them
+        if (head != null && head.startsWith("def"))
+          m_jts.internAtoms();
         
         if (head.equals("defrule"))
           return parseDefrule();
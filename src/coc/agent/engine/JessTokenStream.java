@@ -99,6 +99,19 @@ class JessTokenStream implements Serializable
     m_string.setLength(m_string.length() - (tok.toString().length() + 1));
   }
 
+  /**
+   * Intern the atoms of the sexp on the stack in the TermDictionary.
+   */
+  void internAtoms()
+  {
+    for (int i=0; i<m_stack.size(); i++)
+      {
+        JessToken tok = (JessToken) m_stack.elementAt(i);
+        if (tok.m_ttype == RU.ATOM)
+          TermDictionary.intern(tok.m_sval);
+      }
+  }
+
   /**
    * Return the 'car' of a sexp as a String, or null.
    * @exception ReteException 
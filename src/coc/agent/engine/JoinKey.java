@@ -0,0 +1,73 @@
+package coc.agent.engine;
+
+import java.io.Serializable;
+
+/** **********************************************************************
+ * The values a join node indexes one of its memories on: one slot (or
+ * multislot subslot) per equality test. Both sides of a node build their
+ * keys from the same tests in the same order, so a token can find its
+ * partners by probing a single bucket of the opposite memory.
+ ********************************************************************** */
+
+class JoinKey implements Serializable
+{
+  private int[] m_tokenIdx;
+  private int[] m_slotIdx;
+  private int[] m_subIdx;
+
+  /**
+   * @param tokenIdx Which fact in the token, for each test
+   * @param slotIdx Which slot in that fact
+   * @param subIdx Which subslot in that slot, or -1
+   */
+  JoinKey(int[] tokenIdx, int[] slotIdx, int[] subIdx)
+  {
+    m_tokenIdx = tokenIdx;
+    m_slotIdx = slotIdx;
+    m_subIdx = subIdx;
+  }
+
+  /**
+   * @return The number of values in the key
+   */
+  final int size() { return m_slotIdx.length; }
+
+  /**
+   * Collect the key values of a token, for use as a Hashtable key.
+   * @param t A token
+   * @exception ReteException If a slot isn't there
+   * @return A new ValueVector
+   */
+  ValueVector values(Token t) throws ReteException
+  {
+    ValueVector vv = new ValueVector(m_slotIdx.length);
+    for (int i=0; i<m_slotIdx.length; i++)
+      {
+        Value v = t.fact(m_tokenIdx[i]).m_v[m_slotIdx[i]];
+        if (m_subIdx[i] != -1)
+          v = v.listValue(null).m_v[m_subIdx[i]];
+        vv.add(v);
+      }
+    return vv;
+  }
+
+  /**
+   * Hash the key values of a token. Tokens that pass all the equality
+   * tests hash alike.
+   * @param t A token
+   * @exception ReteException If a slot isn't there
+   * @return A non-negative hash code
+   */
+  int code(Token t) throws ReteException
+  {
+    int code = 0;
+    for (int i=0; i<m_slotIdx.length; i++)
+      {
+        Value v = t.fact(m_tokenIdx[i]).m_v[m_slotIdx[i]];
+        if (m_subIdx[i] != -1)
+          v = v.listValue(null).m_v[m_subIdx[i]];
+        code = 31 * code + v.hashCode();
+      }
+    return (code < 0) ? -code : code;
+  }
+}
@@ -51,6 +51,9 @@ public class MiscFunctions implements Userpackage, Serializable
     engine.addUserfunction(new EvalSalience(EvalSalience.GET));
 
     engine.addUserfunction(new SetNodeIndexing());
+    engine.addUserfunction(new SetNodeLoadFactor());
+    engine.addUserfunction(new MemoryStats());
+    engine.addUserfunction(new NodeCounts());
     engine.addUserfunction(new SetFactory());
 
     engine.addUserfunction(new JessLong());
@@ -491,6 +494,80 @@ class SetNodeIndexing implements Userfunction, Serializable
   }
 }
 
+class SetNodeLoadFactor implements Userfunction, Serializable
+{
+  public String getName() { return "set-node-index-load-factor"; }
+  
+  public Value call( ValueVector vv, Context context ) throws ReteException
+  {
+    double lf = vv.get(1).numericValue(context);
+
+    context.getEngine().getCompiler().setLoadFactor((float) lf);
+    return Funcall.TRUE;
+  }
+}
+
+/**
+ * Print the size and shape of the join memories of one rule, or of every rule.
+ */
+class MemoryStats implements Userfunction, Serializable
+{
+  public String getName() { return "memory-stats"; }
+  
+  public Value call( ValueVector vv, Context context ) throws ReteException
+  {
+    Rete engine = context.getEngine();
+    PrintWriter pw = engine.getOutStream();
+    Enumeration<?> e;
+    if (vv.size() > 1)
+      {
+        String name = vv.get(1).stringValue(context);
+        HasLHS r = engine.findDefrule(name);
+        if (r == null)
+          throw new ReteException("memory-stats", "No such rule or query", name);
+        Vector<HasLHS> v = new Vector<HasLHS>();
+        v.addElement(r);
+        e = v.elements();
+      }
+    else
+      e = engine.listDefrules();
+
+    while (e.hasMoreElements())
+      {
+        HasLHS r = (HasLHS) e.nextElement();
+        Vector<?> nodes = r.getNodes();
+        int n = 0;
+        for (int i=0; i< nodes.size(); i++)
+          if (nodes.elementAt(i) instanceof Node2)
+            {
+              Node2 n2 = (Node2) nodes.elementAt(i);
+              pw.print(r.getName());
+              pw.print(" join ");
+              pw.println(++n);
+              pw.println(n2.memoryStatistics());
+            }
+      }
+    pw.flush();
+    return Funcall.TRUE;
+  }
+}
+
+/**
+ * Print how many nodes the rules use, and how many there are after sharing.
+ */
+class NodeCounts implements Userfunction, Serializable
+{
+  public String getName() { return "node-counts"; }
+  
+  public Value call( ValueVector vv, Context context ) throws ReteException
+  {
+    PrintWriter pw = context.getEngine().getOutStream();
+    pw.println(context.getEngine().getCompiler().getNodeCountReport());
+    pw.flush();
+    return Funcall.TRUE;
+  }
+}
+
 class SetFactory implements Userfunction, Serializable
 {
   public String getName() { return "set-factory"; }
@@ -10,7 +10,7 @@ import java.io.*;
 
 /**
  */
-public abstract class Node implements Serializable
+public abstract class Node implements Cloneable, Serializable
 {
   
   public final static int LEFT     = 0;
@@ -79,6 +79,31 @@ public abstract class Node implements Serializable
         }
   }
 
+  /**
+   * Make an unconnected copy of this node for another engine, with the same
+   * tests but no successors and no listeners. Nodes that keep per-engine
+   * state override this to give the copy its own.
+   * @param engine The engine the copy belongs to
+   * @exception ReteException If the node can't be copied
+   * @return The copy
+   */
+  Node copy(Rete engine) throws ReteException
+  {
+    try
+      {
+        Node n = (Node) clone();
+        n.m_succ = new Vector();
+        n.m_localSucc = null;
+        n.m_nsucc = 0;
+        n.m_listeners = null;
+        return n;
+      }
+    catch (CloneNotSupportedException cnse)
+      {
+        throw new ReteException("Node.copy", "Can't copy node", toString());
+      }
+  }
+
   /**
    * Do the business of this node.
    */
@@ -17,6 +17,13 @@ class Node1MTEQ extends Node1
     m_context = new Context(engine.getGlobalContext());
   }
   
+  Node copy(Rete engine) throws ReteException
+  {
+    Node1MTEQ n = (Node1MTEQ) super.copy(engine);
+    n.m_context = new Context(engine.getGlobalContext());
+    return n;
+  }
+
   boolean callNodeRight(Token t) throws ReteException
   {
     try
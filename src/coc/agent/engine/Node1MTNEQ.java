@@ -18,6 +18,13 @@ class Node1MTNEQ extends Node1
     m_context = new Context(engine.getGlobalContext());
   }
 
+  Node copy(Rete engine) throws ReteException
+  {
+    Node1MTNEQ n = (Node1MTNEQ) super.copy(engine);
+    n.m_context = new Context(engine.getGlobalContext());
+    return n;
+  }
+
   boolean callNodeRight(Token t) throws ReteException
   {
     if (super.callNodeRight(t))
@@ -11,6 +11,11 @@ class Node1TECT extends Node1
     m_name = name;
   }
 
+  /**
+   * @return The fact class name this node tests for
+   */
+  String getName() { return m_name; }
+
   boolean callNodeRight(Token t) throws ReteException
   {
     if (super.callNodeRight(t))
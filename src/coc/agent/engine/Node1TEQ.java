@@ -16,6 +16,13 @@ class Node1TEQ extends Node1
     m_context = new Context(r.getGlobalContext());
   }
   
+  Node copy(Rete engine) throws ReteException
+  {
+    Node1TEQ n = (Node1TEQ) super.copy(engine);
+    n.m_context = new Context(engine.getGlobalContext());
+    return n;
+  }
+
   boolean callNodeRight(Token t) throws ReteException
   {    
     if (super.callNodeRight(t))
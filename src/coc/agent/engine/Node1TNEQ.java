@@ -18,6 +18,13 @@ class Node1TNEQ extends Node1
     m_context = new Context(r.getGlobalContext());
   }
   
+  Node copy(Rete engine) throws ReteException
+  {
+    Node1TNEQ n = (Node1TNEQ) super.copy(engine);
+    n.m_context = new Context(engine.getGlobalContext());
+    return n;
+  }
+
   boolean callNodeRight(Token t) throws ReteException
   {
     if (super.callNodeRight(t))
@@ -25,14 +25,11 @@ class Node2 extends NodeTest implements Serializable
 
 
   /**
-   * Fact index used for tree indexing in right memory
+   * The join keys the memories are indexed on; null unless blessed
    */
 
-  private int m_rightIdx = -1;
-  private int m_rightSubIdx = -1;
-  private int m_leftIdx = -1;
-  private int m_leftSubIdx = -1;
-  private int m_tokenIdx = 0;
+  JoinKey m_leftKey;
+  JoinKey m_rightKey;
 
   /**
    * The key to use when creating token trees
@@ -40,6 +37,12 @@ class Node2 extends NodeTest implements Serializable
     
   private int m_hashkey;
 
+  /**
+   * The load factor at which the token trees grow
+   */
+
+  private float m_loadFactor;
+
   /**
    * True if the unique CE was applied
    */
@@ -65,7 +68,8 @@ class Node2 extends NodeTest implements Serializable
 
 
   /**
-   * True if we can do short-cut testing
+   * True if we can do short-cut testing: the node has equality tests, and
+   * each memory is hashed on the values they compare.
    */
   boolean m_blessed = false;
 
@@ -75,13 +79,15 @@ class Node2 extends NodeTest implements Serializable
    * @param engine The Rete engine the node will be installed in
    * @param unique True if the 'unique' CE was applied
    * @param hashkey Hashkey to use for creating TokenTrees
+   * @param loadFactor Load factor at which the TokenTrees grow
    */
 
-  Node2(Rete engine, boolean unique, int hashkey) 
+  Node2(Rete engine, boolean unique, int hashkey, float loadFactor) 
   {
     super(engine);
     m_unique = unique;
     m_hashkey = hashkey;
+    m_loadFactor = loadFactor;
     // System.out.println("m_hashkey = " + hashkey);
     
   }
@@ -294,14 +300,8 @@ class Node2 extends NodeTest implements Serializable
   {
     if (m_blessed)
       {
-        Value v;
-        if (m_leftSubIdx == -1)
-          v = lt.fact(m_tokenIdx).get(m_leftIdx);
-        else
-          v = lt.fact(m_tokenIdx).get(m_leftIdx).listValue(null).get(m_leftSubIdx);
-
         TokenVector fv;
-        if ((fv = th.findCodeInTree(v.hashCode(), false)) == null)
+        if ((fv = th.findCodeInTree(m_leftKey.code(lt), false)) == null)
           return false;
         
         else
@@ -363,16 +363,8 @@ class Node2 extends NodeTest implements Serializable
 
     if (m_blessed)
       {
-        Fact fact = token.topFact();
-        Value v;
-        if (m_rightSubIdx == -1)
-          v = fact.get(m_rightIdx);
-        else
-          v = fact.get(m_rightIdx).listValue(null).get(m_rightSubIdx);
-          
-        
         TokenVector fv;
-        if ((fv = th.findCodeInTree(v.hashCode(), false)) == null)          
+        if ((fv = th.findCodeInTree(m_rightKey.code(token), false)) == null)
           return false;
         
         else
@@ -539,6 +531,41 @@ class Node2 extends NodeTest implements Serializable
   }
 
 
+  /**
+   * Join nodes must also agree on 'unique' and on how their memories are
+   * hashed. A node that backward-chains for one rule's pattern is never
+   * shared.
+   */
+
+  public boolean equals(Object o) 
+  {
+    if (this == o)
+      return true;
+
+    if (!super.equals(o))
+      return false;
+
+    Node2 n = (Node2) o;
+    return (m_unique == n.m_unique &&
+            m_hashkey == n.m_hashkey &&
+            m_loadFactor == n.m_loadFactor &&
+            m_pattern == null && n.m_pattern == null);
+  }
+
+  /**
+   * Agrees with equals(): equal nodes have as many tests, in any order, and
+   * the same settings.
+   */
+
+  public int hashCode()
+  {
+    int h = getClass().hashCode();
+    h = h * 31 + m_tests.size();
+    h = h * 31 + (m_unique ? 1 : 0);
+    h = h * 31 + m_hashkey;
+    return h * 31 + Float.floatToIntBits(m_loadFactor);
+  }
+
   /**
    * Describe myself
    * @return A string showing all the tests, etc, in this node.
@@ -575,17 +602,27 @@ class Node2 extends NodeTest implements Serializable
     initTransientMembers();
   }
 
+  // The copy starts with empty memories; m_defrule is fixed up by the
+  // ReteCompiler once the rules have been copied too
+  Node copy(Rete engine) throws ReteException
+  {
+    Node2 n = (Node2) super.copy(engine);
+    n.m_left = n.m_right = null;
+    n.m_matches = 0;
+    n.initTransientMembers();
+    return n;
+  }
+
   // Called from the Constructor and from readObject
-  private void initTransientMembers()
+  void initTransientMembers()
   {
-    boolean useSortCode = (m_leftIdx == -1);
     if (m_left == null)
-      m_left = new TokenTree(m_hashkey, useSortCode, m_tokenIdx, m_leftIdx, m_leftSubIdx);
+      m_left = new TokenTree(m_hashkey, m_loadFactor, m_leftKey);
     else
       m_left.clear();
 
     if (m_right == null)
-      m_right = new TokenTree(m_hashkey, false, 0, m_rightIdx, m_rightSubIdx);
+      m_right = new TokenTree(m_hashkey, m_loadFactor, m_rightKey);
     else
       m_right.clear();
   }
@@ -596,7 +633,9 @@ class Node2 extends NodeTest implements Serializable
     
   StringBuffer displayMemory()
   {
-    StringBuffer sb = new StringBuffer("\nLeft Memory:\n");
+    StringBuffer sb = new StringBuffer("\n");
+    sb.append(memoryStatistics());
+    sb.append("\n\nLeft Memory:\n");
     for (int i=0; i<m_left.m_hash; i++)
       {
         TokenVector tv = m_left.m_tokens[i];
@@ -625,6 +664,17 @@ class Node2 extends NodeTest implements Serializable
   
 
 
+  /**
+   * Describe the size and shape of both memories, to show skew in the
+   * hashing.
+   * @return One line per memory: tokens, buckets, used buckets, longest chain
+   */
+
+  String memoryStatistics()
+  {
+    return "Left: " + m_left.describe() + "\nRight: " + m_right.describe();
+  }
+
   /*
    * Move the tests into an array
    * possibly compact the test array
@@ -638,59 +688,53 @@ class Node2 extends NodeTest implements Serializable
     super.complete();
 
 
-    // Try to have a positive Test2Simple first
-    for (int i=0; i<m_localTests.length; i++)
+    // Index both memories on every positive equality test, Test2Simple
+    // ones first; run those tests first too, as they're the cheapest.
+    int n = 0;
+    for (int pass=0; pass<2; pass++)
+      for (int i=0; i<m_localTests.length; i++)
+        {
+          Test t = m_localTests[i];
+          if (pass == 0 ? (t instanceof Test2Simple && ((Test2Simple) t).getTest())
+                        : (t instanceof Test2Multi && ((Test2Multi) t).getTest()))
+            {
+              m_localTests[i] = m_localTests[n];
+              m_localTests[n++] = t;
+            }
+        }
+
+    m_blessed = (n > 0);
+    if (m_blessed)
       {
-        Test t = m_localTests[i];
-        if (t instanceof Test2Simple)
+        int[] tokenIdx = new int[n], leftIdx = new int[n], leftSubIdx = new int[n];
+        int[] rightTokenIdx = new int[n], rightIdx = new int[n], rightSubIdx = new int[n];
+        for (int i=0; i<n; i++)
           {
-            Test2Simple t2s = (Test2Simple) t;
-            if (t2s.getTest())
+            if (m_localTests[i] instanceof Test2Simple)
               {
-                if (i > 0)
-                  {
-                    Test tmp = m_localTests[0];
-                    m_localTests[0] = t2s;
-                    m_localTests[i] = tmp;
-                  }
-                m_rightIdx = t2s.getRightIndex();
-                m_tokenIdx = t2s.getTokenIndex();
-                m_leftIdx = t2s.getLeftIndex();
-                m_blessed = true;
-                break;
+                Test2Simple t2s = (Test2Simple) m_localTests[i];
+                tokenIdx[i] = t2s.getTokenIndex();
+                leftIdx[i] = t2s.getLeftIndex();
+                leftSubIdx[i] = -1;
+                rightIdx[i] = t2s.getRightIndex();
+                rightSubIdx[i] = -1;
               }
-          }
-      }
-
-    
-    // If this fails, try to have a positive Test2Multi first
-    if (!m_blessed)
-      {
-        for (int i=0; i<m_localTests.length; i++)
-          {
-            Test t = m_localTests[i];
-            if (t instanceof Test2Multi)
+            else
               {
-                Test2Multi t2s = (Test2Multi) t;
-                if (t2s.getTest())
-                  {
-                    if (i > 0)
-                      {
-                        Test tmp = m_localTests[0];
-                        m_localTests[0] = t2s;
-                        m_localTests[i] = tmp;
-                      }
-                    m_rightIdx = t2s.getRightIndex();
-                    m_rightSubIdx = t2s.getRightSubIndex();
-                    m_tokenIdx = t2s.getTokenIndex();
-                    m_leftIdx = t2s.getLeftIndex();
-                    m_leftSubIdx = t2s.getLeftSubIndex();
-                    m_blessed = true;
-                    break;
-                  }
+                Test2Multi t2m = (Test2Multi) m_localTests[i];
+                tokenIdx[i] = t2m.getTokenIndex();
+                leftIdx[i] = t2m.getLeftIndex();
+                leftSubIdx[i] = t2m.getLeftSubIndex();
+                rightIdx[i] = t2m.getRightIndex();
+                rightSubIdx[i] = t2m.getRightSubIndex();
               }
           }
+        m_leftKey = new JoinKey(tokenIdx, leftIdx, leftSubIdx);
+        m_rightKey = new JoinKey(rightTokenIdx, rightIdx, rightSubIdx);
       }
+    else
+      m_leftKey = m_rightKey = null;
+    m_left = m_right = null;
 
     initTransientMembers();
   }
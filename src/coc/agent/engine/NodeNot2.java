@@ -40,18 +40,73 @@
 
 package coc.agent.engine;
 import java.io.*;
+import java.util.Hashtable;
 import java.util.Vector;
 
 /**
  */
 class NodeNot2 extends Node2 implements Serializable
 {
+  /**
+   * True if every test is an equality test on the join key. Then a left
+   * token is blocked exactly when some right token has the same key, so
+   * the right memory is summarized by a count per key, and a right token
+   * only touches the left memory when its key's count goes between zero
+   * and one. Each left token's negation count is then 0 or 1.
+   */
+  private boolean m_counting;
+
+  /**
+   * Number of right tokens for each join key (a ValueVector), when counting
+   */
+  private transient Hashtable<ValueVector, Integer> m_counts;
+
   /**
    * @param engine 
    */
-  NodeNot2(Rete engine, int hashkey) throws ReteException
+  NodeNot2(Rete engine, int hashkey, float loadFactor) throws ReteException
+  {
+    super(engine, false, hashkey, loadFactor);
+  }
+
+  void complete() throws ReteException
+  {
+    super.complete();
+    m_counting = m_blessed && m_leftKey.size() == m_localTests.length;
+  }
+
+  void initTransientMembers()
+  {
+    super.initTransientMembers();
+    m_counts = new Hashtable<ValueVector, Integer>();
+  }
+
+  String memoryStatistics()
   {
-    super(engine, false, hashkey);
+    String s = super.memoryStatistics();
+    if (m_counting)
+      s += "\nCounted keys: " + m_counts.size();
+    return s;
+  }
+
+  private int count(ValueVector key)
+  {
+    Integer c = m_counts.get(key);
+    return (c == null) ? 0 : c.intValue();
+  }
+
+  private int adjustCount(ValueVector key, int delta) throws ReteException
+  {
+    int n = count(key) + delta;
+    if (n < 0)
+      throw new ReteException("NodeNot2.adjustCount",
+                              "Corrupted count (< 0)",
+                              key.toStringWithParens());
+    if (n == 0)
+      m_counts.remove(key);
+    else
+      m_counts.put(key, Integer.valueOf(n));
+    return n;
   }
 
   boolean callNodeLeft(Token token) throws ReteException
@@ -61,6 +116,57 @@ class NodeNot2 extends Node2 implements Serializable
 
     return super.callNodeLeft(token);
   }
+
+  /**
+   * An update for a fact that is already in the right memory is already
+   * counted in the left tokens' negation counts; counting it again would
+   * block them for good. This happens when a new rule shares this node, or
+   * its inputs, while there are facts.
+   * <P>
+   * When counting, the left memory is only visited when the count for the
+   * token's key goes from zero to one, or from one to zero.
+   */
+
+  boolean callNodeRight(Token t) throws ReteException
+  {
+    int tag = t.m_tag;
+    if (!m_counting && tag != RU.UPDATE)
+      return super.callNodeRight(t);
+
+    try
+      {
+        broadcastEvent(JessEvent.RETE_TOKEN + Node.RIGHT, t); 
+        switch (tag)
+          {
+          case RU.ADD:
+          case RU.UPDATE:
+            if (m_right.add(t, tag == RU.UPDATE) &&
+                (!m_counting || adjustCount(m_rightKey.values(t), 1) == 1))
+              runTestsVaryLeft(t, m_left);
+            break;
+
+          case RU.REMOVE:
+            if (m_right.remove(t) &&
+                adjustCount(m_rightKey.values(t), -1) == 0)
+              runTestsVaryLeft(t, m_left);
+            break;
+
+          case RU.CLEAR:
+            return false;
+
+          default:
+            throw new ReteException("NodeNot2.callNode",
+                                    "Bad tag in token",
+                                    String.valueOf(tag));
+          }
+        return true;
+      }
+    catch (ReteException je)
+      {
+        je.addContext("rule LHS (NodeNot2)");
+        throw je;        
+      }
+  }
     
   /**
    * Run all the tests on a given (left) token and every token in the
@@ -77,7 +183,12 @@ class NodeNot2 extends Node2 implements Serializable
   boolean runTestsVaryRight(Token lt, TokenTree th) throws ReteException 
   {
     if (lt.m_tag != RU.REMOVE)      
-      super.runTestsVaryRight(lt, th);
+      {
+        if (m_counting)
+          lt.m_negcnt = (count(m_leftKey.values(lt)) > 0) ? 1 : 0;
+        else
+          super.runTestsVaryRight(lt, th);
+      }
     
     if (lt.m_negcnt == 0)
       {
@@ -214,6 +325,8 @@ class NodeNot2 extends Node2 implements Serializable
       }
     sb.append(";usecount = ");
     sb.append(m_usecount);
+    sb.append(";counting = ");
+    sb.append(m_counting);
     sb.append("]");
     return sb.toString();
   }
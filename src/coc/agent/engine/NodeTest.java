@@ -50,6 +50,14 @@ class NodeTest extends Node implements Serializable
       m_localTests[i] = (Test) m_tests.elementAt(i); 
   }
 
+  Node copy(Rete engine) throws ReteException
+  {
+    NodeTest n = (NodeTest) super.copy(engine);
+    n.m_engine = engine;
+    n.m_context = new Context(engine.getGlobalContext());
+    return n;
+  }
+
   /**
    * Bare NodeTests can only have Test1's in them.
    */
@@ -100,10 +108,10 @@ class NodeTest extends Node implements Serializable
   }
 
   /**
-   * For our purposes, two Node2's are equal if every test in
-   * one has an equivalent test in the other, and if the test vectors are
-   * the same size. The subclass NodeNot2 should never be shared, so we'll
-   * report unequal always. This routine is used during network compilation,
+   * For our purposes, two Node2's are equal if they are of the same class,
+   * every test in one has an equivalent test in the other, and the test
+   * vectors are the same size. Equal nodes with the same inputs are shared
+   * between rules. This routine is used during network compilation,
    * not at runtime.
    */
 
@@ -117,8 +125,7 @@ class NodeTest extends Node implements Serializable
 
     NodeTest n = (NodeTest) o;
       
-    if (n instanceof NodeNot2 ||
-        n.m_tests.size() != m_tests.size())
+    if (n.m_tests.size() != m_tests.size())
       return false;
 
   outer_loop:
@@ -0,0 +1,25 @@
+package coc.agent.engine;
+
+/** **********************************************************************
+ * A conflict resolution strategy that can compare two activations directly.
+ * The engine keeps its agenda in a heap; a Strategy that implements this
+ * interface orders the heap with compare(), and any other Strategy is asked
+ * where each activation would go in a Vector, which is slower.
+ *<P>
+ ********************************************************************** */
+
+public interface OrderedStrategy extends Strategy
+{
+  /**
+   * Return a negative number if a1 should fire before a2, a positive number if
+   * a2 should fire first, and zero if the strategy doesn't care; activations
+   * that compare equal fire most recent first. Salience should be respected,
+   * and the order must agree with addActivation().
+   *
+   * @param a1 An activation
+   * @param a2 Another activation
+   * @return The comparison
+   */
+
+  int compare(Activation a1, Activation a2);
+}
@@ -231,10 +231,20 @@ public class Rete implements Serializable
   { return (Writer) m_outRouters.get(s);}
   
   /**
-    The fact-list is unique to each interpreter.
+    The fact-list is unique to each interpreter. Keyed by fact-id, and
+    enumerated in assertion order.
     */
   
-  transient private Vector m_facts;
+  transient private FactList m_facts;
+
+  /**
+    Content index over the fact-list. Keys and elements are the Facts
+    themselves, so an equal Fact (same head and slot data, any ID) finds the
+    one on the list without a linear scan. Only the first of several
+    duplicates is indexed when fact-duplication is on.
+    */
+
+  transient private Hashtable<Fact, Fact> m_factIndex;
 
   /**
     Facts generated by LHS actions, not asserted until RHS time.
@@ -286,7 +296,7 @@ public class Rete implements Serializable
     The agenda is unique to each interpreter.
     */
 
-  private transient Vector m_activations;
+  private transient ActivationHeap m_activations;
 
   /**
     Each interpreter has its own compiler object
@@ -303,10 +313,11 @@ public class Rete implements Serializable
   final ReteCompiler getCompiler() { return m_compiler; }
 
   /**
-    Flag for (halt) function
+    Flag for (halt) function; volatile so that halt() from another thread
+    stops a running engine
     */
 
-  transient private boolean m_halt;
+  transient private volatile boolean m_halt;
 
   /**
    * Flag to allow duplicate facts
@@ -326,6 +337,26 @@ public class Rete implements Serializable
    */
   public void setFactDuplication(boolean  v) {m_factDuplication = v;}  
 
+  /**
+   * Flag to send each fact only to the network roots for its head
+   */
+
+  private boolean m_rootDispatch = true;
+
+  /**
+   * Returns true if facts are dispatched to the roots of the pattern network
+   * by fact head, false if every fact is offered to every root.
+   * @return Value of rootDispatch.
+   */
+  public boolean getRootDispatch() {return m_rootDispatch;}
+
+  /**
+   * Turn root dispatch on or off. It's on by default; turning it off is only
+   * useful for comparing the two.
+   * @param v  Value to assign to rootDispatch.
+   */
+  public void setRootDispatch(boolean  v) {m_rootDispatch = v;}  
+
   /**
     Stuff to help us parse Jess code
     */
@@ -414,7 +445,7 @@ public class Rete implements Serializable
    */
   public Rete()
   {
-    this(null);
+    this((Applet) null);
   }
 
   /**
@@ -432,6 +463,7 @@ public class Rete implements Serializable
     try
       {
         m_strategy = (Strategy) Class.forName("coc.agent.engine.depth").newInstance();
+        m_activations.setStrategy(m_strategy);
         Funcall.loadIntrinsics(this);
       }
     catch (ReteException re)
@@ -454,7 +486,73 @@ public class Rete implements Serializable
         throw new RuntimeException(e.toString());
       }
   }
-  
+
+  /**
+   * Make a new engine with the rules, deftemplates, deffacts, defglobals and
+   * functions of this one, but none of its facts or activations. The
+   * network is copied node by node rather than recompiled, so this is much
+   * cheaper than parsing the rules again. The copy has its own node memories
+   * and contexts; it shares the parsed patterns, tests and RHS actions, and
+   * the Userfunction objects (except watch/unwatch), with this engine. Output
+   * routers are the defaults, as in a new Rete.
+   * @exception ReteException If anything goes wrong
+   * @return The new engine
+   */
+  public Rete copyRules() throws ReteException
+  {
+    synchronized (m_compiler)
+      {
+        return new Rete(this);
+      }
+  }
+
+  private Rete(Rete r) throws ReteException
+  {
+    m_globalContext = new Context(this);
+    initTransientMembers();
+
+    m_strategy = r.m_strategy;
+    m_activations.setStrategy(m_strategy);
+    m_resetGlobals = r.m_resetGlobals;
+    m_evalSalience = r.m_evalSalience;
+    m_factDuplication = r.m_factDuplication;
+    m_rootDispatch = r.m_rootDispatch;
+    m_nextRuleId = r.m_nextRuleId;
+
+    m_deftemplates = (Hashtable) r.m_deftemplates.clone();
+    m_deffacts = (Hashtable) r.m_deffacts.clone();
+    m_defglobals = (Hashtable) r.m_defglobals.clone();
+    m_initialFact = new Fact("initial-fact", this);
+    m_clearFact = new Fact("__clear", this);
+    m_nullFact = new Fact("__not_or_test_CE", this);
+
+    for (Enumeration<?> e = r.m_globalContext.getBindings().elements(); e.hasMoreElements();)
+      {
+        Binding b = (Binding) e.nextElement();
+        m_globalContext.addGlobalBinding(b.m_name, b.m_val);
+      }
+
+    // watch and unwatch keep their settings in the function object
+    Hashtable<Watch, Watch> copies = new Hashtable<Watch, Watch>();
+    for (Enumeration<?> e = r.m_functions.keys(); e.hasMoreElements();)
+      {
+        Object name = e.nextElement();
+        Userfunction uf = ((FunctionHolder) r.m_functions.get(name)).getFunction();
+        if (uf instanceof Watch)
+          uf = ((Watch) uf).copy(copies);
+        m_functions.put(name, new FunctionHolder(uf));
+      }
+    for (Enumeration<?> e = r.m_listeners.elements(); e.hasMoreElements();)
+      {
+        Object jel = e.nextElement();
+        m_listeners.addElement(copies.containsKey(jel) ? copies.get(jel) : jel);
+      }
+    setEventMask(r.m_eventMask);
+
+    m_rules = (Hashtable) r.m_rules.clone();
+    m_compiler = r.m_compiler.copy(this, m_rules);
+  }
+
   private void initTransientMembers()
   {
     try
@@ -473,10 +571,11 @@ public class Rete implements Serializable
         addOutputRouter("WSTDOUT", getOutputRouter("t"));
         addOutputRouter("WSTDERR", getOutputRouter("t"));
         
-        m_facts = new Vector();
+        m_facts = new FactList();
+        m_factIndex = new Hashtable<Fact, Fact>(1021);
         m_factsToAssert = new Vector();
         m_factsToRetract = new Vector();
-        m_activations = new Vector();
+        m_activations = new ActivationHeap(m_strategy);
         m_storage = new Hashtable();
         
         addDeftemplate(s_uberTemplate);
@@ -571,11 +670,12 @@ public class Rete implements Serializable
     clearStorage();
     m_globalContext = new Context(this);
 
-    m_facts.removeAllElements();
+    m_facts.clear();
+    m_factIndex.clear();
     m_factsToAssert.removeAllElements();
     m_factsToRetract.removeAllElements();
     m_rules.clear();
-    m_activations.removeAllElements();
+    m_activations.clear();
 
     // Undefine Deffunctions, but nothing else
     Hashtable temp = new Hashtable(100);
@@ -620,7 +720,8 @@ public class Rete implements Serializable
 
         m_clearFact.setFactId(0);
         processToken(RU.CLEAR, m_clearFact);
-        m_facts.setSize(0);
+        m_facts.clear();
+        m_factIndex.clear();
         // System.gc();
       }
   }
@@ -644,7 +745,7 @@ public class Rete implements Serializable
         
         removeFacts();
         m_globalContext.removeNonGlobals();
-        m_activations.removeAllElements();
+        m_activations.clear();
         m_nextFactId = 0;
         m_time = 0;
         assertFact(m_initialFact);
@@ -656,7 +757,7 @@ public class Rete implements Serializable
         {
             removeFacts();
             m_globalContext.removeNonGlobals();
-            m_activations.removeAllElements();
+            m_activations.clear();
             m_nextFactId = 0;
             m_time = 0;
             assert(m_initialFact);
@@ -781,6 +882,81 @@ public class Rete implements Serializable
       processPendingFacts();
     return i;
   }
+
+  /**
+   * Assert a batch of facts, in order, as one operation. The batch is
+   * checked against working memory (and against itself) in a single pass,
+   * the surviving facts get consecutive fact-ids, and all of them go
+   * through the Rete network while the engine is locked once. The facts
+   * end up with the same ids and activations as asserting them one at a
+   * time with assertFact(), except that facts generated for backward
+   * chaining are only asserted once the whole batch is in.
+   * <P>
+   * FACT events are still sent one per fact, since watchers print them
+   * individually; if no one is listening for them the batch sends none.
+   * @param facts A Collection of Fact objects, which become the property
+   * of Jess as in assertFact()
+   * @exception ReteException If anything goes wrong
+   * @return The fact-id of each fact, in the batch's order, or -1 where a
+   * fact was already asserted
+   */
+  public int[] assertAll(Collection<Fact> facts) throws ReteException
+  {
+    int[] ids = new int[facts.size()];
+    synchronized (m_compiler)
+      {
+        // weed out duplicates before any ids are handed out
+        Fact[] batch = new Fact[ids.length];
+        Hashtable<Fact, Fact> seen = m_factDuplication ? null : new Hashtable<Fact, Fact>(ids.length * 2 + 1);
+        int n = 0, i = 0;
+        for (Iterator<Fact> it = facts.iterator(); it.hasNext(); ++i)
+          {
+            Fact f = it.next();
+            if (seen != null && (findFact(f) != null || seen.put(f, f) != null))
+              ids[i] = -1;
+            else
+              {
+                batch[i] = f;
+                ++n;
+              }
+          }
+        if (n == 0)
+          return ids;
+
+        int id;
+        synchronized (m_idLock)
+          {
+            id = m_nextFactId;
+            m_nextFactId += n;
+          }
+        m_facts.ensureCapacity(m_facts.size() + n);
+
+        boolean broadcast = (m_eventMask & JessEvent.FACT) != 0;
+        IReteSession sess = getSession();
+        for (i=0; i<batch.length; i++)
+          {
+            Fact f = batch[i];
+            if (f == null)
+              continue;
+
+            f.setFactId(id);
+            ids[i] = id++;
+            if (broadcast)
+              broadcastEvent(JessEvent.FACT, f);
+
+            ++m_time;
+            f.updateTime(this);
+            m_facts.add(f);
+            indexFact(f);
+            processToken(RU.ADD, f);
+
+            if (sess != null)
+              sess.pushf(f);
+          }
+      }
+    processPendingFacts();
+    return ids;
+  }
   
   private Object m_activationSemaphore = "ACTIVATION LOCK";
 
@@ -821,7 +997,8 @@ public class Rete implements Serializable
         
         ++m_time;
         f.updateTime(this);
-        m_facts.addElement(f);
+        m_facts.add(f);
+        indexFact(f);
         
         // Send it to the Rete network
         processToken(RU.ADD, f);
@@ -867,7 +1044,8 @@ public class Rete implements Serializable
         
         ++m_time;
         f.updateTime(this);
-        m_facts.addElement(f);
+        m_facts.add(f);
+        indexFact(f);
         
         // Send it to the Rete network
         processToken(RU.ADD, f);
@@ -944,10 +1122,10 @@ public class Rete implements Serializable
       {
         synchronized (m_facts)
           {
-            int idx;
-            if ((idx = findFactIdx(f)) != -1) 
+            Fact tf;
+            if ((tf = findFact(f)) != null) 
               {
-                Fact ff = _retract(idx);
+                Fact ff = _retract(tf.getFactId());
                 processPendingFacts();
                 return ff;
               }
@@ -969,35 +1147,34 @@ public class Rete implements Serializable
       {
         synchronized (m_facts)
           {
-            int idx;
-            if ((idx = findFactIdxByID(id)) != -1)
-              {
-                Fact ff = _retract(idx);
-                processPendingFacts();
-                return ff;
-              }
-            else
-              return null;
+            Fact ff = _retract(id);
+            if (ff != null)
+              processPendingFacts();
+            return ff;
           }
       }
   }
 
   /**
-   * Retract a fact by index within fact-list. Better be calling this
+   * Retract a fact by fact-id. Better be calling this
    * from within a block locked on m_facts!
-   * @param idx The physical index in m_facts to retract
+   * @param id The fact-id of the fact to retract
    * @exception ReteException If anything goes wrong
+   * @return The retracted fact, or null if there was none with this id
    */
-  private Fact _retract(int idx) throws ReteException
+  private Fact _retract(int id) throws ReteException
   {
     synchronized (m_compiler)
       {
         synchronized (m_facts)
           {
             
-            Fact f = (Fact) m_facts.elementAt(idx);          
+            Fact f = m_facts.get(id);
+            if (f == null)
+              return null;
             broadcastEvent(JessEvent.FACT | JessEvent.REMOVED, f);
-            m_facts.removeElementAt(idx);          
+            m_facts.remove(id);
+            unindexFact(f);
             
             ++m_time;
             f.updateTime(this);
@@ -1025,10 +1202,10 @@ public class Rete implements Serializable
       {
         synchronized (m_facts)
           {
-            int idx;
-            if ((idx = findFactIdx(f)) != -1) 
+            Fact tf;
+            if ((tf = findFact(f)) != null) 
               {
-                return _retract(idx);
+                return _retract(tf.getFactId());
               }
             else
               return null;
@@ -1036,11 +1213,6 @@ public class Rete implements Serializable
       }
   }
 
-
-  
-  private RU.Fetch fetchFactID =
-    new RU.Fetch() { public int fetch(Object o) { return ((Fact) o).getFactId(); }};
-  
   /**
    * This 'find' is used by the retract that rules use. Consider the returned Fact
    * to be READ-ONLY!
@@ -1053,88 +1225,51 @@ public class Rete implements Serializable
   {
     synchronized (m_facts)
       {
-        int idx = findFactIdxByID(id);
-        if (idx != -1)
-          return (Fact) m_facts.elementAt(idx);
-        else
-          return null;
+        return m_facts.get(id);
       }
   }
 
   /**
-   * Always call these and use the result from within a block synchronized
-   * on m_facts!
+   * Does a given fact exist? (We're looking for identical
+   * data, but the ID can differ)
    */
-  private int findFactIdxByID(int id) throws ReteException 
+  private Fact findFact(Fact f) throws ReteException 
   {
-    synchronized (m_facts)
-      {        
-        int size = m_facts.size();
-        if (size > 500)
-          {
-            int idx = 
-              RU.bsearchVector(id, m_facts, 0, size, fetchFactID, RU.compareGTE);
-            if (idx != -1)
-              {
-                Fact f = (Fact) m_facts.elementAt(idx);
-                if (f.getFactId() == id)
-                  return idx;
-              }
-          }
-        else
-          {
-            
-            for (int idx=0; idx<size; idx++)
-              {
-                Fact f =  (Fact) m_facts.elementAt(idx);
-                if (f.getFactId() == id)
-                  return idx;
-              }
-          }
-        return -1;
-      }
+    return m_factIndex.get(f);
   }
 
   /**
-   * Does a given fact exist? (We're looking for identical
-   * data, but the ID can differ)
+   * Enter a newly asserted fact in the content index. If an equal fact is
+   * already there (fact-duplication is on), keep the older one.
    */
-  private Fact findFact(Fact f) throws ReteException 
+  private void indexFact(Fact f)
   {
-    synchronized(m_facts)
-      {
-        int idx = findFactIdx(f);
-        if (idx != -1)
-          return (Fact) m_facts.elementAt(idx);
-        else
-          return null;
-      }
+    if (!m_factIndex.containsKey(f))
+      m_factIndex.put(f, f);
   }
 
   /**
-   * Use this if the fact doesn't have a valid ID
+   * Remove a retracted fact from the content index. If duplicates are
+   * allowed, promote the next equal fact on the list, if any.
    */
-   
-  private int findFactIdx(Fact f) throws ReteException 
+  private void unindexFact(Fact f)
   {
-    int size = m_facts.size();
-    int fsize = f.size();
-  outer_loop:
-    for (int i=0; i < size; i++) 
+    if (m_factIndex.get(f) != f)
+      return;
+
+    m_factIndex.remove(f);
+    if (m_factDuplication)
       {
-        Fact tf = (Fact) m_facts.elementAt(i);
-        if (fsize != tf.size())
-          continue;
-        if (!f.getName().equals(tf.getName()))
-          continue;
-        for (int j=0; j < fsize; j++) 
+        for (Enumeration<Fact> e = m_facts.elements(); e.hasMoreElements();)
           {
-            if (!f.get(j).equals(tf.get(j)))
-              continue outer_loop;
+            Fact tf = e.nextElement();
+            if (f.equals(tf))
+              {
+                m_factIndex.put(tf, tf);
+                return;
+              }
           }
-        return i;
       }
-    return -1;
   }
 
   /**
@@ -1145,9 +1280,9 @@ public class Rete implements Serializable
   public String ppFacts(String name) 
   {
     StringBuffer sb = new StringBuffer(m_facts.size() * 60);
-    for (int i=0; i<m_facts.size(); i++) 
+    for (Enumeration e = m_facts.elements(); e.hasMoreElements();)
       {
-        Fact f = (Fact) m_facts.elementAt(i);
+        Fact f = (Fact) e.nextElement();
         if (!f.getName().equals(name))
           continue;
         sb.append(f.toList().toStringBuffer());
@@ -1163,9 +1298,9 @@ public class Rete implements Serializable
   public String ppFacts()
   {
     StringBuffer sb = new StringBuffer(m_facts.size() * 60);
-    for (int i=0; i<m_facts.size(); i++) 
+    for (Enumeration e = m_facts.elements(); e.hasMoreElements();)
       {
-        Fact f = (Fact) m_facts.elementAt(i);
+        Fact f = (Fact) e.nextElement();
         sb.append(f.toList().toStringBuffer());
         sb.append("\n");
       }
@@ -1198,10 +1333,16 @@ public class Rete implements Serializable
   { return m_facts.elements(); }
 
   /**
-   * Return an Enumeration of all the activiations - i.e, the agenda.
+   * Return an Enumeration of all the activiations - i.e, the agenda - in the
+   * order they will fire.
    */
   public Enumeration listActivations()
-  { return m_activations.elements(); }
+  {
+    synchronized (m_activations)
+      {
+        return m_activations.toSortedVector().elements();
+      }
+  }
 
   /**
    * Return an Enumeration of all the defglobals in this engine.
@@ -1225,9 +1366,9 @@ public class Rete implements Serializable
   
   /**
    * Process a Token which represents a fact being added or removed.
-   * Eventually we should set this up so that the token gets dispatched
-   * to only one root of the pattern net - right now it presented to all of
-   * them!
+   * The token goes only to the roots whose class test can match the fact's
+   * head (plus any roots that aren't class tests), except for CLEAR tokens,
+   * which every root must see.
    */
   private boolean processTokenOneNode(Token t, Node n) throws ReteException
   {
@@ -1242,12 +1383,26 @@ public class Rete implements Serializable
     boolean result = false;
     synchronized (m_compiler)
       {
-        Vector v = m_compiler.roots();
-        
         // make sure the network is optimized
         m_compiler.freeze();
-        int size = v.size();    
         Token t = Rete.getFactory().newToken(fact, tag);
+
+        if (tag != RU.CLEAR && m_rootDispatch)
+          {
+            Node1[] nodes = m_compiler.otherRoots();
+            for (int i=0; i<nodes.length; i++)
+              if (processTokenOneNode(t, nodes[i]))
+                result = true;
+
+            nodes = m_compiler.rootsFor(fact.getDeftemplate());
+            for (int i=0; i<nodes.length; i++)
+              if (processTokenOneNode(t, nodes[i]))
+                result = true;
+            return result;
+          }
+
+        Vector v = m_compiler.roots();
+        int size = v.size();    
         for (int i=0; i<size; i++)
           {
             Node1 n = (Node1) v.elementAt(i);            
@@ -1513,6 +1668,7 @@ public class Rete implements Serializable
             broadcastEvent(JessEvent.DEFRULE | JessEvent.REMOVED, odr);
 
             odr.remove(m_compiler.roots());
+            m_compiler.markDirty();
             m_rules.remove(name);
             if (odr instanceof Defrule)
               for (Enumeration e=m_activations.elements(); e.hasMoreElements();)
@@ -1541,10 +1697,16 @@ public class Rete implements Serializable
 
     broadcastEvent(JessEvent.ACTIVATION, a);
 
-    if (m_evalSalience != Rete.INSTALL)
-      a.getRule().evalSalience();
+    synchronized (m_activations)
+      {
+        // A changed salience moves this rule's other activations too
+        Defrule dr = a.getRule();
+        if (m_evalSalience != Rete.INSTALL &&
+            dr.getSalience() != dr.evalSalience())
+          m_activations.reorder();
 
-    m_strategy.addActivation(a, m_activations);
+        m_activations.add(a);
+      }
     synchronized (m_activationSemaphore) { m_activationSemaphore.notify();}
   }
 
@@ -1559,14 +1721,7 @@ public class Rete implements Serializable
       {
         String rv = m_strategy.getName();
         m_strategy = s;
-        Vector v = m_activations;
-        m_activations = new Vector();
-        for (Enumeration e = v.elements(); e.hasMoreElements();)
-          {
-            Activation a = (Activation) e.nextElement(); 
-            if (!a.isInactive())
-              addActivation(a);
-          }
+        m_activations.setStrategy(s);
         return rv;
       }
   }
@@ -1649,8 +1804,7 @@ public class Rete implements Serializable
 
             synchronized (m_activations) 
               {
-                a = (Activation) m_activations.elementAt(0);              
-                m_activations.removeElementAt(0);
+                a = m_activations.pop();
               }
             
             if (!a.isInactive())
@@ -1673,11 +1827,10 @@ public class Rete implements Serializable
           {
             synchronized (m_activations)
               {
-                Vector v = m_activations;
-                m_activations = new Vector();
-
-                for (Enumeration e = v.elements(); e.hasMoreElements();)
-                  addActivation((Activation) e.nextElement());
+                for (Enumeration<Activation> e = m_activations.elements();
+                     e.hasMoreElements();)
+                  e.nextElement().getRule().evalSalience();
+                m_activations.reorder();
               }
           }
       }
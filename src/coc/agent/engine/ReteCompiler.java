@@ -27,6 +27,10 @@ class ReteCompiler implements Serializable
   private int m_hashkey = 101;
   public int getHashKey() { return m_hashkey; }
   public void setHashKey(int h) { m_hashkey = h; }
+
+  private float m_loadFactor = TokenTree.DEFAULT_LOAD_FACTOR;
+  public float getLoadFactor() { return m_loadFactor; }
+  public void setLoadFactor(float f) { m_loadFactor = f; }
   
   /**
     The roots of the pattern network
@@ -38,6 +42,55 @@ class ReteCompiler implements Serializable
    */
   public final Vector roots() { return m_roots; }
 
+  /**
+    Roots of the pattern network grouped by fact head. Built lazily from
+    m_roots for each deftemplate name seen, and thrown away whenever the
+    network changes.
+    */
+
+  private Hashtable<String, Node1[]> m_dispatch = new Hashtable<String, Node1[]>();
+  private Node1[] m_otherRoots = new Node1[0];
+
+  /**
+   * Return the roots that a fact with the given deftemplate can activate:
+   * every class test for that template or one of its ancestors, in network
+   * order. Roots that aren't class tests (the 'test' CE root, for example)
+   * are not included; see otherRoots().
+   * @param deft The fact's deftemplate
+   * @return The roots, which must not be modified
+   */
+  final Node1[] rootsFor(Deftemplate deft)
+  {
+    Node1[] nodes = m_dispatch.get(deft.getName());
+    if (nodes != null)
+      return nodes;
+
+    Vector<Node1> v = new Vector<Node1>();
+    for (int i=0; i<m_roots.size(); i++)
+      {
+        Object o = m_roots.elementAt(i);
+        if (!(o instanceof Node1TECT))
+          continue;
+        String name = ((Node1TECT) o).getName();
+        for (Deftemplate dt = deft; dt != null; dt = dt.getParent())
+          if (name.equals(dt.getName()))
+            {
+              v.addElement((Node1) o);
+              break;
+            }
+      }
+    nodes = new Node1[v.size()];
+    v.copyInto(nodes);
+    m_dispatch.put(deft.getName(), nodes);
+    return nodes;
+  }
+
+  /**
+   * Return the roots that aren't class tests. Every token is offered to these.
+   * @return The roots, which must not be modified
+   */
+  final Node1[] otherRoots() { return m_otherRoots; }
+
   /**
     Have any rules been added?
     */
@@ -53,6 +106,112 @@ class ReteCompiler implements Serializable
     m_engine = r;
   }
 
+  /**
+   * Copy the network for a copy of the engine. Shared nodes stay shared, and
+   * successors keep their order, so the copy matches facts and fires rules
+   * exactly as this network does. The copied nodes start with empty memories.
+   * @param engine The engine the copy belongs to
+   * @param rules The engine's rules by name; each value is replaced by its copy
+   * @exception ReteException If anything goes wrong
+   * @return The new compiler, owning the copied network
+   */
+  synchronized ReteCompiler copy(Rete engine, Hashtable rules) throws ReteException
+  {
+    ReteCompiler c = new ReteCompiler(engine);
+    c.m_hashkey = m_hashkey;
+    c.m_loadFactor = m_loadFactor;
+
+    IdentityHashMap<Node, Node> copies = new IdentityHashMap<Node, Node>();
+    for (int i=0; i<m_roots.size(); i++)
+      c.m_roots.addElement(copyNode((Node) m_roots.elementAt(i), engine, copies));
+
+    for (Enumeration<?> e = rules.keys(); e.hasMoreElements();)
+      {
+        Object name = e.nextElement();
+        rules.put(name, copyNode((Node) rules.get(name), engine, copies));
+      }
+
+    // Now point the copies at each other
+    Node[] originals = copies.keySet().toArray(new Node[copies.size()]);
+    for (int i=0; i<originals.length; i++)
+      {
+        Node o = originals[i];
+        if (o instanceof Node2 && ((Node2) o).m_defrule != null)
+          ((Node2) copies.get(o)).m_defrule =
+            (Defrule) copyNode(((Node2) o).m_defrule, engine, copies);
+
+        else if (o instanceof HasLHS)
+          {
+            Vector<?> nodes = ((HasLHS) o).getNodes();
+            Vector copied = ((HasLHS) copies.get(o)).getNodes();
+            for (int j=0; j<nodes.size(); j++)
+              copied.addElement(copyNode((Node) nodes.elementAt(j), engine, copies));
+          }
+      }
+
+    c.m_dirty = true;
+    c.freeze();
+    return c;
+  }
+
+  private static Node copyNode(Node n, Rete engine, IdentityHashMap<Node, Node> copies)
+       throws ReteException
+  {
+    Node c = copies.get(n);
+    if (c == null)
+      {
+        c = n.copy(engine);
+        copies.put(n, c);
+        Vector<?> succ = n.succ();
+        for (int i=0; i<succ.size(); i++)
+          c.succ().addElement(copyNode((Node) succ.elementAt(i), engine, copies));
+      }
+    return c;
+  }
+
+  /**
+   * Count the nodes in the network twice: once for every rule that uses
+   * them, which is how many there would be without sharing, and once each.
+   * @return A short report, one line for one-input and one for join nodes
+   */
+  public synchronized String getNodeCountReport()
+  {
+    IdentityHashMap<Object, Object> seen = new IdentityHashMap<Object, Object>();
+    int used1 = 0, used2 = 0, unique1 = 0, unique2 = 0;
+    for (Enumeration<?> e = m_engine.listDefrules(); e.hasMoreElements();)
+      {
+        Vector<?> nodes = ((HasLHS) e.nextElement()).getNodes();
+        for (int i=0; i<nodes.size(); i++)
+          {
+            Object n = nodes.elementAt(i);
+            boolean join;
+            if (n instanceof Node1)
+              join = false;
+            else if (n instanceof NodeTest)
+              join = true;
+            else
+              continue;
+
+            boolean isNew = (seen.put(n, n) == null);
+            if (join)
+              {
+                ++used2;
+                if (isNew) ++unique2;
+              }
+            else
+              {
+                ++used1;
+                if (isNew) ++unique1;
+              }
+          }
+      }
+
+    return "one-input nodes: " + used1 + " used by rules, " + unique1 +
+      " in network\n" +
+      "two-input nodes: " + used2 + " used by rules, " + unique2 +
+      " in network";
+  }
+
   /**
    * Evaluate a funcall, replacing all variable references with the int[]
    * mini-bindings used by the nodes for predicate funcall evaluation.
@@ -144,14 +303,27 @@ class ReteCompiler implements Serializable
   {
     if (m_dirty) 
       {
+        Vector<Node1> others = new Vector<Node1>();
         for (int i=0; i< m_roots.size(); i++) 
           {
-            ((Node) m_roots.elementAt(i)).freeze();
+            Node n = (Node) m_roots.elementAt(i);
+            n.freeze();
+            if (!(n instanceof Node1TECT))
+              others.addElement((Node1) n);
           }
+        m_otherRoots = new Node1[others.size()];
+        others.copyInto(m_otherRoots);
+        m_dispatch.clear();
       }
     m_dirty = false;
   }
 
+  /**
+   * Call this when roots have been removed from the network, so that the
+   * head dispatch table is rebuilt.
+   */
+  void markDirty() { m_dirty = true; }
+
   private Hashtable m_doneVars = new Hashtable();
   /**
    * Add a rule's patterns to the network
@@ -546,9 +718,9 @@ class ReteCompiler implements Serializable
         if (isTest)
           n2 = new NodeTest(m_engine);
         else if (p.getNegated() != 0)
-          n2 = new NodeNot2(m_engine, hash);
+          n2 = new NodeNot2(m_engine, hash, m_loadFactor);
         else
-          n2 = new Node2(m_engine, p.getUnique(), hash);
+          n2 = new Node2(m_engine, p.getUnique(), hash, m_loadFactor);
         
         // now tell the node what tests to perform
 
@@ -635,15 +807,18 @@ class ReteCompiler implements Serializable
         // search through the successors of this pattern and the next one.
         // Do they have any in common, and if so, are they equivalent to the
         // one we just built? If so, we don't need to add the new one!
-        // Don't share Node2's.
- 
+        // A node that will backward-chain for this pattern can't be shared.
+
+        boolean backchain = (r instanceof Defrule &&
+                             p.getDeftemplate().getBackwardChaining() &&
+                             ! p.getExplicit());
         boolean newNode = true;
 
         Vector left = terminals[i-1].succ();
         Vector right = terminals[i].succ();
         
       j_loop:
-        for (int j=0; j<left.size(); j++) 
+        for (int j=0; !backchain && j<left.size(); j++) 
           {
             Node jnode = (Node) left.elementAt(j);
             if (!n2.equals(jnode))
@@ -667,8 +842,7 @@ class ReteCompiler implements Serializable
             left.addElement(n2);
             right.addElement(n2);
        
-            if (r instanceof Defrule &&
-                p.getDeftemplate().getBackwardChaining() && ! p.getExplicit())
+            if (backchain)
               {
                 // n2 can't be a NodeTest, since do-backwards-chaining would
                 // have rejected the call. Explicit CEs are those for which we should
@@ -694,7 +868,7 @@ class ReteCompiler implements Serializable
             for (int nested_nots=1; nested_nots < p.getNegated(); nested_nots++)
               {
                 Node nltr = new Node1LTR();  // A left-to-right input adapter
-                NodeTest not = new NodeNot2(m_engine, hash);   // outer not
+                NodeTest not = new NodeNot2(m_engine, hash, m_loadFactor);   // outer not
                 not.complete();              // must call this after all tests added
                 n2.succ().addElement(nltr);  // the inner not feeds into the adapter
                 nltr.succ().addElement(not); // the adapter feeds into the outer not
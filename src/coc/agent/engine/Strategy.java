@@ -49,7 +49,7 @@ public interface Strategy
   String getName();
 }
 
-class breadth implements Strategy, Serializable
+class breadth implements OrderedStrategy, Serializable
 {
 
   public int findActivation(Token t, Defrule d, Vector v) throws ReteException
@@ -136,10 +136,21 @@ class breadth implements Strategy, Serializable
     return;
   }
 
+  public int compare(Activation a1, Activation a2)
+  {
+    int s1 = a1.getRule().getSalience(), s2 = a2.getRule().getSalience();
+    if (s1 != s2)
+      return s1 > s2 ? -1 : 1;
+    int t1 = a1.getToken().getTime(), t2 = a2.getToken().getTime();
+    if (t1 != t2)
+      return t1 < t2 ? -1 : 1;
+    return 0;
+  }
+
   public String getName() { return "breadth"; }
 }
 
-class depth implements Strategy, Serializable
+class depth implements OrderedStrategy, Serializable
 {
   public int findActivation(Token t, Defrule d, Vector v) throws ReteException
   {
@@ -224,6 +235,17 @@ class depth implements Strategy, Serializable
     return;
   }
 
+  public int compare(Activation a1, Activation a2)
+  {
+    int s1 = a1.getRule().getSalience(), s2 = a2.getRule().getSalience();
+    if (s1 != s2)
+      return s1 > s2 ? -1 : 1;
+    int t1 = a1.getToken().getTime(), t2 = a2.getToken().getTime();
+    if (t1 != t2)
+      return t1 > t2 ? -1 : 1;
+    return 0;
+  }
+
   public String getName() { return "depth"; }
 }
 
@@ -0,0 +1,108 @@
+package coc.agent.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/** **********************************************************************
+ * The term dictionary of rule and template symbols: Jesp interns every atom
+ * of a defrule, deftemplate or other construct here and gives it a small
+ * int id, so that atoms naming the same symbol share one String and are
+ * compared by id. Ids are dense, start at 0, and are never reused.
+ * <P>
+ * Atoms made while the engine runs, such as the words of a document, are
+ * only looked up, never interned: the dictionary grows with the rules a
+ * process compiles, not with the text it reads.
+ * <P>
+ * Thread-safe. Looking a term up by id takes no lock.
+ ********************************************************************** */
+
+public class TermDictionary
+{
+  private static final ConcurrentHashMap<String, Integer> s_ids = new ConcurrentHashMap<String, Integer>(4096);
+  private static volatile String[] s_terms = new String[4096];
+  private static int s_count = 0;
+
+  private TermDictionary() {}
+
+  /**
+   * Intern a rule or template symbol.
+   * @param term The term
+   * @return The term's id, given it now if it had none
+   */
+  public static int intern(String term)
+  {
+    Integer id = s_ids.get(term);
+    if (id != null)
+      return id.intValue();
+
+    synchronized (TermDictionary.class)
+      {
+        id = s_ids.get(term);
+        if (id != null)
+          return id.intValue();
+
+        String[] terms = s_terms;
+        if (s_count == terms.length)
+          {
+            String[] grown = new String[terms.length * 2];
+            System.arraycopy(terms, 0, grown, 0, s_count);
+            s_terms = terms = grown;
+          }
+        int n = s_count++;
+        terms[n] = term;
+        // the term is stored before its id is published
+        s_ids.put(term, Integer.valueOf(n));
+        return n;
+      }
+  }
+
+  /**
+   * @param term A term
+   * @return The term's id, or -1 if it has not been interned
+   */
+  public static int lookup(String term)
+  {
+    Integer id = s_ids.get(term);
+    return id == null ? -1 : id.intValue();
+  }
+
+  /**
+   * @param id An id given by intern()
+   * @return The term with that id
+   */
+  public static String term(int id)
+  {
+    String[] terms = s_terms;
+    if (id < 0 || id >= terms.length || terms[id] == null)
+      {
+        // a reader may hold an array from before the last growth
+        synchronized (TermDictionary.class)
+          {
+            if (id < 0 || id >= s_count)
+              throw new IllegalArgumentException("No term with id " + id);
+            return s_terms[id];
+          }
+      }
+    return terms[id];
+  }
+
+  /**
+   * @return The dictionary's copy of term if it has been interned, or else
+   * term itself
+   */
+  public static String canonical(String term)
+  {
+    int id = lookup(term);
+    return id < 0 ? term : term(id);
+  }
+
+  /**
+   * @return The number of terms interned
+   */
+  public static int size()
+  {
+    synchronized (TermDictionary.class)
+      {
+        return s_count;
+      }
+  }
+}
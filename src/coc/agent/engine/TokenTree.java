@@ -3,28 +3,47 @@ package coc.agent.engine;
 import java.io.*;
 
 /** **********************************************************************
- * A sort of Hashtable of Tokens kept by sortcode
+ * A sort of Hashtable of Tokens kept by sortcode. The table grows and
+ * rehashes itself once the average bucket holds more than the load factor
+ * allows; a load factor of zero or less keeps the table at its initial size.
  *
  * $Id: TokenTree.java,v 1.1 2012/10/02 21:06:02 Buildadmin Exp $
  ********************************************************************** */
 
 class TokenTree implements Serializable
 {
+  static final float DEFAULT_LOAD_FACTOR = 4.0f;
+
   int m_hash;
 
   TokenVector[] m_tokens;
 
-  boolean m_useSortcode;
-  int m_tokenIdx, m_factIdx, m_subIdx;
+  // null to hash on the token's sortcode
+  JoinKey m_key;
+
+  private float m_loadFactor;
+  private int m_size;
+  private int m_threshold;
+
+  TokenTree(int hash, JoinKey key)
+  {
+    this(hash, DEFAULT_LOAD_FACTOR, key);
+  }
 
-  TokenTree(int hash, boolean useSortCode, int tokenIdx, int factIdx, int subIdx)
+  TokenTree(int hash, float loadFactor, JoinKey key)
   {
     m_hash = hash;
-    m_useSortcode = useSortCode;
-    m_factIdx = factIdx;
-    m_subIdx = subIdx;
-    m_tokenIdx = tokenIdx;
+    m_loadFactor = loadFactor;
+    m_key = key;
     m_tokens = new TokenVector[m_hash];
+    m_threshold = threshold(m_hash);
+  }
+
+  private int threshold(int hash)
+  {
+    if (m_loadFactor <= 0)
+      return Integer.MAX_VALUE;
+    return (int) Math.min(hash * (double) m_loadFactor, Integer.MAX_VALUE);
   }
 
   final void clear()
@@ -32,6 +51,67 @@ class TokenTree implements Serializable
     for (int i=0; i< m_hash; i++)
       if (m_tokens[i] != null)
         m_tokens[i].clear();
+    m_size = 0;
+  }
+
+  /**
+   * @return The number of tokens held
+   */
+  final int size() { return m_size; }
+
+  /**
+   * @return The load factor this table grows at
+   */
+  final float getLoadFactor() { return m_loadFactor; }
+
+  /**
+   * @return The number of buckets holding at least one token
+   */
+  synchronized int getUsedBuckets()
+  {
+    int n = 0;
+    for (int i=0; i< m_hash; i++)
+      if (m_tokens[i] != null && m_tokens[i].size() > 0)
+        ++n;
+    return n;
+  }
+
+  /**
+   * @return The number of tokens in the fullest bucket
+   */
+  synchronized int getLongestChain()
+  {
+    int n = 0;
+    for (int i=0; i< m_hash; i++)
+      if (m_tokens[i] != null && m_tokens[i].size() > n)
+        n = m_tokens[i].size();
+    return n;
+  }
+
+  /**
+   * Describe the shape of this table.
+   * @return A one-line summary: tokens, buckets, used buckets, longest chain
+   */
+  synchronized String describe()
+  {
+    StringBuffer sb = new StringBuffer(64);
+    sb.append(m_size);
+    sb.append(" tokens in ");
+    sb.append(m_hash);
+    sb.append(" buckets (");
+    sb.append(getUsedBuckets());
+    sb.append(" used), longest chain ");
+    sb.append(getLongestChain());
+    return sb.toString();
+  }
+
+  private int codeOf(Token t) throws ReteException
+  {
+    if (m_key != null)
+      return m_key.code(t);
+
+    int code = t.m_sortcode;
+    return (code < 0) ? -code : code;
   }
 
   /**
@@ -40,21 +120,7 @@ class TokenTree implements Serializable
    */
   synchronized boolean add(Token t, boolean update) throws ReteException
   {
-    int code;
-    if (m_useSortcode) 
-      code = t.m_sortcode;
-    else if (m_factIdx == -1)
-      code = t.fact(m_tokenIdx).getFactId();
-    else if (m_subIdx == -1)
-      code = t.fact(m_tokenIdx).m_v[m_factIdx].hashCode();
-    else
-      code = t.fact(m_tokenIdx).m_v[m_factIdx].listValue(null).m_v[m_subIdx].hashCode();
-      
-
-    if (code < 0)
-      code = -code;
-
-    TokenVector v = findCodeInTree(code, true);
+    TokenVector v = findCodeInTree(codeOf(t), true);
 
     int size = v.size();
     
@@ -69,6 +135,8 @@ class TokenTree implements Serializable
         }
 
     v.addElement(t);
+    if (++m_size > m_threshold)
+      rehash(m_hash * 2 + 1);
     return true;
   }  
 
@@ -77,20 +145,7 @@ class TokenTree implements Serializable
    */
   synchronized boolean remove(Token t) throws ReteException
   {
-    int code;
-    if (m_useSortcode) 
-      code = t.m_sortcode;
-    else if (m_factIdx == -1)
-      code = t.fact(m_tokenIdx).getFactId();
-    else if (m_subIdx == -1)
-      code = t.fact(m_tokenIdx).get(m_factIdx).hashCode();
-    else
-      code = t.fact(m_tokenIdx).get(m_factIdx).listValue(null).get(m_subIdx).hashCode();
-    
-    if (code < 0)
-      code = -code;
-    
-    TokenVector v = findCodeInTree(code, false);    
+    TokenVector v = findCodeInTree(codeOf(t), false);    
     
     if (v == null)
       return false;
@@ -106,11 +161,39 @@ class TokenTree implements Serializable
         if (t.dataEquals(tt))
           {
             v.removeElementAt(i);
+            --m_size;
             return true;
           }
       }
     return false;
   }
+
+  /**
+   * Move every token into a table with the given number of buckets. Tokens
+   * that share a bucket afterwards keep their relative order.
+   * @param hash The new number of buckets
+   */
+  private void rehash(int hash) throws ReteException
+  {
+    TokenVector[] old = m_tokens;
+    int oldHash = m_hash;
+
+    m_hash = hash;
+    m_tokens = new TokenVector[hash];
+    m_threshold = threshold(hash);
+
+    for (int i=0; i< oldHash; i++)
+      {
+        TokenVector v = old[i];
+        if (v == null)
+          continue;
+        for (int j=0; j< v.size(); j++)
+          {
+            Token t = v.elementAt(j);
+            findCodeInTree(codeOf(t), true).addElement(t);
+          }
+      }
+  }
   
   /**
    * @param t 
@@ -75,7 +75,15 @@ public class Value implements Serializable
       throw typeError("Value", "Not a string type", type);
 
     m_type = type; 
-    m_objectval = s;
+    if (type == RU.ATOM)
+      {
+        // rule and template symbols share one String and carry their
+        // TermDictionary id; other atoms carry -1
+        m_intval = TermDictionary.lookup(s);
+        m_objectval = m_intval < 0 ? s : TermDictionary.term(m_intval);
+      }
+    else
+      m_objectval = s;
   }
 
   /**
@@ -307,6 +315,26 @@ public class Value implements Serializable
     return stringValue(c);
   }
 
+  /**
+   * Returns the id of this value's text in the TermDictionary, if it is a
+   * rule or template symbol.
+   * @exception ReteException If this value is not an atom or string
+   * @return The term id, or -1 if the text has not been interned
+   */
+
+  public int termId() throws ReteException
+  {
+    switch (m_type)
+      {
+      case RU.ATOM:
+        return m_intval;
+      case RU.STRING:
+        return TermDictionary.lookup((String) m_objectval);
+      default:
+        throw typeError("termId", "Not an atom or string");
+      }
+  }
+
   /**
    * Returns the contents of this value, as a String (a variable name)
    * @exception ReteException If this value does not contain a variable
@@ -503,6 +531,12 @@ public class Value implements Serializable
       case RU.FLOAT:
         return (m_floatval == v.m_floatval);
         
+      case RU.ATOM:
+        // symbols compare by id, other atoms by their text
+        if (m_intval >= 0 && v.m_intval >= 0)
+          return (m_intval == v.m_intval);
+        return m_objectval.equals(v.m_objectval);
+
       default:
         return m_objectval.equals(v.m_objectval);
       }
@@ -584,6 +618,22 @@ public class Value implements Serializable
   {
     return this;
   }
+
+  /**
+   * Term ids are only good in the JVM that gave them, so atoms are looked up
+   * again as they are read.
+   */
+  private void readObject(ObjectInputStream stream)
+    throws IOException, ClassNotFoundException
+  {
+    stream.defaultReadObject();
+    if (m_type == RU.ATOM)
+      {
+        m_intval = TermDictionary.lookup((String) m_objectval);
+        if (m_intval >= 0)
+          m_objectval = TermDictionary.term(m_intval);
+      }
+  }
   
   /**
    * CyberObject --- customized - compare without type
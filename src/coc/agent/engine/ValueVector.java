@@ -159,6 +159,19 @@ public class ValueVector implements Cloneable, Serializable
     return true;
   }
 
+  /**
+   * Compute a hashcode from the contained Values, consistent with equals().
+   * Position matters, so (a b) and (b a) will usually hash differently.
+   * @return The hashcode
+   */
+  public int hashCode()
+  {
+    int retval = m_ptr;
+    for (int i=0; i < m_ptr; i++)
+      retval = 31 * retval + (m_v[i] == null ? 0 : m_v[i].hashCode());
+    return retval;
+  }
+
   /**
    * Return a String version of this ValueVector, without parentheses.
    * @return The String
@@ -0,0 +1,196 @@
+package coc.agent.engine;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.Hashtable;
+
+/**
+ * *** watch ***
+ */
+class Watch implements Userfunction, JessListener, Serializable {
+	private boolean m_facts, m_rules, m_compilations, m_activations;
+
+	private Watch m_partner;
+
+	Watch() {
+	}
+
+	Watch(Watch w) {
+		m_partner = w;
+	}
+
+	/**
+	 * A watch or unwatch function for a copied engine, with the same settings
+	 * as this one. The pair stays a pair: copies maps each original to its copy.
+	 */
+	Watch copy(Hashtable<Watch, Watch> copies) {
+		Watch w = copies.get(this);
+		if (w == null) {
+			if (m_partner == null) {
+				w = new Watch();
+				w.m_facts = m_facts;
+				w.m_rules = m_rules;
+				w.m_compilations = m_compilations;
+				w.m_activations = m_activations;
+			} else
+				w = new Watch(m_partner.copy(copies));
+			copies.put(this, w);
+		}
+		return w;
+	}
+
+	public String getName() {
+		return m_partner == null ? "watch" : "unwatch";
+	}
+
+	private boolean installListener(int mask, Rete engine) {
+		boolean state = m_facts || m_rules || m_activations || m_compilations;
+		mask = engine.getEventMask() | mask;
+		engine.setEventMask(mask);
+		if (!state)
+			engine.addJessListener(this);
+		return state;
+	}
+
+	private boolean removeListener(int mask, Rete engine) {
+		boolean state = m_partner.m_facts || m_partner.m_rules
+				|| m_partner.m_activations || m_partner.m_compilations;
+		mask = engine.getEventMask() & ~mask;
+		engine.setEventMask(mask);
+		if (!state)
+			engine.removeJessListener(m_partner);
+		return state;
+	}
+
+	// Note that the ordering of things (when installListener, THEN set flag,
+	// but unset, then remove) is carefully orchestrated. Be careful when
+	// modifying.
+	public Value call(ValueVector vv, Context context) throws ReteException {
+		String what = vv.get(1).stringValue(context);
+		Rete engine = context.getEngine();
+
+		if (what.equals("rules")) {
+			if (m_partner == null) {
+				installListener(JessEvent.DEFRULE_FIRED, engine);
+				m_rules = true;
+			} else {
+				m_partner.m_rules = false;
+				removeListener(JessEvent.DEFRULE_FIRED, engine);
+			}
+		}
+
+		else if (what.equals("facts")) {
+			if (m_partner == null) {
+				installListener(JessEvent.FACT, engine);
+				m_facts = true;
+			} else {
+				m_partner.m_facts = false;
+				removeListener(JessEvent.FACT, engine);
+			}
+
+		}
+
+		else if (what.equals("activations")) {
+			if (m_partner == null) {
+				installListener(JessEvent.ACTIVATION, engine);
+				m_activations = true;
+			} else {
+				m_partner.m_activations = false;
+				removeListener(JessEvent.ACTIVATION, engine);
+			}
+
+		}
+
+		else if (what.equals("compilations")) {
+			if (m_partner == null) {
+				installListener(JessEvent.DEFRULE, engine);
+				m_compilations = true;
+			} else {
+				m_partner.m_compilations = false;
+				removeListener(JessEvent.DEFRULE, engine);
+			}
+
+		}
+
+		else if (what.equals("all")) {
+			if (m_partner == null) {
+				installListener(JessEvent.DEFRULE, engine);
+				m_compilations = m_activations = m_rules = m_facts = true;
+				installListener(JessEvent.DEFRULE_FIRED, engine);
+				installListener(JessEvent.FACT, engine);
+				installListener(JessEvent.ACTIVATION, engine);
+			} else {
+				m_partner.m_compilations = m_partner.m_activations = m_partner.m_rules = m_partner.m_facts = false;
+				removeListener(JessEvent.DEFRULE, engine);
+				removeListener(JessEvent.DEFRULE_FIRED, engine);
+				removeListener(JessEvent.FACT, engine);
+				removeListener(JessEvent.ACTIVATION, engine);
+			}
+		} else
+			throw new ReteException("watch", "watch: can't watch/unwatch", what);
+
+		return Funcall.TRUE;
+	}
+
+	public void eventHappened(JessEvent je) throws ReteException {
+		int type = je.getType();
+		boolean remove = (type & JessEvent.REMOVED) != 0;
+		Rete engine = (Rete) je.getSource();
+		switch (type & ~JessEvent.REMOVED) {
+		case JessEvent.CLEAR:
+			m_rules = m_facts = m_activations = m_compilations = false;
+			engine.removeJessListener(this);
+			break;
+		case JessEvent.FACT: {
+			if (m_facts) {
+				Fact f = (Fact) je.getObject();
+				PrintWriter pw = engine.getOutStream();
+				pw.print(remove ? " <== " : " ==> ");
+				pw.print("f-");
+				pw.print(f.getFactId());
+				pw.print(" ");
+				pw.println(f);
+				pw.flush();
+				//print all fact information into a single log file
+				PrintWriter pw_fact = engine.getOutFACTStream();
+				pw_fact.print(remove ? " <== " : " ==> ");
+				pw_fact.print("f-");
+				pw_fact.print(f.getFactId());
+				pw_fact.print(" ");
+				pw_fact.println(f);
+				pw_fact.flush();
+			}
+			break;
+		}
+		case JessEvent.DEFRULE_FIRED: {
+			if (m_rules)
+				((Activation) je.getObject()).debugPrint(engine.getOutStream());
+			break;
+		}
+		case JessEvent.ACTIVATION: {
+			if (m_activations) {
+				Activation a = (Activation) je.getObject();
+				PrintWriter pw = engine.getOutStream();
+				pw.print(remove ? "<== " : "==> ");
+				pw.print("Activation: ");
+				pw.print(a.getRule().getName());
+				pw.print(" : ");
+				pw.println(engine.factList(a.getToken()));
+				pw.flush();
+			}
+			break;
+		}
+		case JessEvent.DEFRULE: {
+			if (m_compilations & !remove) {
+				PrintWriter pw = engine.getOutStream();
+				pw.println(((HasLHS) je.getObject()).getCompilationTrace());
+				pw.flush();
+			}
+
+			break;
+		}
+		default:
+			break;
+		}
+	}
+}
@@ -17,13 +17,7 @@ package coc.agent.model;
 //##begin module.imports preserve=yes
 
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.Serializable;
-import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -290,21 +284,8 @@ class KnownUnitType implements Userfunction, Serializable {
 		//String filename = vv.get(1).stringValue(context);
 		String filename = "rule/unit_types.txt";
 		String currentType = vv.get(1).stringValue(context);
-		
-		File file = new File(filename);
-		Vector<String> vec = new Vector<String>();
-		try {
-			BufferedReader bw = new BufferedReader(new FileReader(file));
-			String line = null;
-			while ((line = bw.readLine()) != null) {
-				vec.add(line.toLowerCase());
-			}
-			bw.close();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
 
-		if(vec.contains(currentType.toLowerCase())){
+		if(Lexicon.forFile(filename).contains(currentType)){
 			return Funcall.TRUE;
 		}else{
 			return Funcall.FALSE;
@@ -337,10 +318,18 @@ class Regexp implements Userfunction
         {
             try
             {
-            	Pattern p = Pattern.compile( vv.get( 2 ).stringValue( context ) );
-            	Matcher match = p.matcher( vv.get( 1 ).stringValue( context ) );
+                Value pattern = vv.get( 2 );
+                RegexPredicate p;
+                if( pattern.type() == RU.STRING || pattern.type() == RU.ATOM )
+                {
+                    p = RegexPredicate.forLiteral( pattern.stringValue( context ) );
+                }
+                else
+                {
+                    p = RegexPredicate.forPattern( pattern.stringValue( context ) );
+                }
 
-                if( match.find())
+                if( p.find( vv.get( 1 ).stringValue( context ) ) )
                 {
                     return Funcall.TRUE;
                 }
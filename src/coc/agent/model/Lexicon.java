@@ -0,0 +1,139 @@
+package coc.agent.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Hashtable;
+
+/**
+ * A word list loaded from a text file, one entry per line, for lexicon
+ * predicates such as isunit. Lookups ignore case and don't allocate.
+ * <p>
+ * Lexicons are shared: every caller of {@link #forFile(String)} with the same
+ * path gets the same instance. The file is read before the lexicon is handed
+ * out and read again when its modification time changes, checked at most once
+ * a second.
+ */
+public class Lexicon {
+	private static final long CHECK_INTERVAL = 1000;
+
+	private static final Hashtable<String, Lexicon> s_lexicons = new Hashtable<String, Lexicon>();
+
+	private final File file;
+	private volatile String[] table = new String[1];
+	private volatile long loadedModified = -1;
+	private volatile long lastCheck;
+
+	private Lexicon(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Get the shared lexicon for a file.
+	 */
+	public static Lexicon forFile(String filename) {
+		synchronized (s_lexicons) {
+			Lexicon lex = s_lexicons.get(filename);
+			if (lex == null) {
+				lex = new Lexicon(new File(filename));
+				// loaded before it is shared, so no caller sees it empty
+				lex.reloadIfChanged();
+				lex.lastCheck = System.currentTimeMillis();
+				s_lexicons.put(filename, lex);
+			}
+			return lex;
+		}
+	}
+
+	/**
+	 * @return true if the word is in the lexicon, ignoring case
+	 */
+	public boolean contains(String word) {
+		long now = System.currentTimeMillis();
+		if (now - lastCheck >= CHECK_INTERVAL) {
+			lastCheck = now;
+			reloadIfChanged();
+		}
+		return contains(table, word);
+	}
+
+	/**
+	 * @return the number of distinct entries
+	 */
+	public int size() {
+		String[] t = table;
+		int n = 0;
+		for (int i = 0; i < t.length; i++) {
+			if (t[i] != null)
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Read the file again if it has changed since it was last read.
+	 */
+	public synchronized void reloadIfChanged() {
+		long modified = file.lastModified();
+		if (modified == loadedModified)
+			return;
+
+		String[] t = new String[16];
+		int size = 0;
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while ((line = br.readLine()) != null) {
+					line = line.trim();
+					if (line.length() == 0 || contains(t, line))
+						continue;
+					if ((size + 1) * 2 > t.length)
+						t = rehash(t, t.length * 2);
+					insert(t, line);
+					size++;
+				}
+			} finally {
+				br.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		table = t;
+		loadedModified = modified;
+	}
+
+	// Case-insensitive String.hashCode(), spread over the low bits
+	private static int hash(String s) {
+		int h = 0;
+		for (int i = 0; i < s.length(); i++)
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean contains(String[] t, String word) {
+		int mask = t.length - 1;
+		for (int i = hash(word) & mask; t[i] != null; i = (i + 1) & mask) {
+			if (t[i].equalsIgnoreCase(word))
+				return true;
+		}
+		return false;
+	}
+
+	private static void insert(String[] t, String word) {
+		int mask = t.length - 1;
+		int i = hash(word) & mask;
+		while (t[i] != null)
+			i = (i + 1) & mask;
+		t[i] = word;
+	}
+
+	private static String[] rehash(String[] old, int capacity) {
+		String[] t = new String[capacity];
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] != null)
+				insert(t, old[i]);
+		}
+		return t;
+	}
+}
@@ -0,0 +1,127 @@
+package coc.agent.model;
+
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled pattern for the regexp function. Patterns that are only
+ * anchored literal prefixes, such as "^prep_" or "^more-|^most-", are
+ * checked with startsWith and never reach java.util.regex.
+ * <p>
+ * Literal patterns from the rule base are compiled once and kept; patterns
+ * built at run time go through a bounded least-recently-used cache.
+ */
+class RegexPredicate
+{
+    static final int DYNAMIC_CACHE_SIZE = 256;
+
+    private static final String META = "\\.[]{}()*+?^$|";
+
+    private static final Hashtable<String, RegexPredicate> s_literals = new Hashtable<String, RegexPredicate>();
+
+    private static final Map<String, RegexPredicate> s_dynamic =
+        new LinkedHashMap<String, RegexPredicate>( 64, 0.75f, true )
+    {
+        protected boolean removeEldestEntry( Map.Entry<String, RegexPredicate> eldest )
+        {
+            return size() > DYNAMIC_CACHE_SIZE;
+        }
+    };
+
+    private final String[] m_prefixes;
+    private final Pattern m_pattern;
+
+    private RegexPredicate( String[] prefixes, Pattern pattern )
+    {
+        m_prefixes = prefixes;
+        m_pattern = pattern;
+    }
+
+    /**
+     * Get the predicate for a pattern written literally in a rule.
+     */
+    static RegexPredicate forLiteral( String regex )
+    {
+        RegexPredicate p = s_literals.get( regex );
+        if( p == null )
+        {
+            p = compile( regex );
+            s_literals.put( regex, p );
+        }
+        return p;
+    }
+
+    /**
+     * Get the predicate for a pattern computed at run time.
+     */
+    static RegexPredicate forPattern( String regex )
+    {
+        synchronized( s_dynamic )
+        {
+            RegexPredicate p = s_dynamic.get( regex );
+            if( p == null )
+            {
+                p = compile( regex );
+                s_dynamic.put( regex, p );
+            }
+            return p;
+        }
+    }
+
+    static RegexPredicate compile( String regex )
+    {
+        String[] prefixes = anchoredPrefixes( regex );
+        if( prefixes != null )
+        {
+            return new RegexPredicate( prefixes, null );
+        }
+        return new RegexPredicate( null, Pattern.compile( regex ) );
+    }
+
+    /**
+     * Split "^a|^b|..." into its literal prefixes, or return null if the
+     * pattern is anything else.
+     */
+    private static String[] anchoredPrefixes( String regex )
+    {
+        String[] alts = regex.split( "\\|", -1 );
+        for( int i = 0; i < alts.length; i++ )
+        {
+            String alt = alts[i];
+            if( !alt.startsWith( "^" ) )
+            {
+                return null;
+            }
+            for( int j = 1; j < alt.length(); j++ )
+            {
+                if( META.indexOf( alt.charAt( j ) ) >= 0 )
+                {
+                    return null;
+                }
+            }
+            alts[i] = alt.substring( 1 );
+        }
+        return alts;
+    }
+
+    /**
+     * @return true if the pattern is found in s, as Matcher.find() would
+     */
+    boolean find( String s )
+    {
+        if( m_prefixes == null )
+        {
+            return m_pattern.matcher( s ).find();
+        }
+        for( int i = 0; i < m_prefixes.length; i++ )
+        {
+            if( s.startsWith( m_prefixes[i] ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
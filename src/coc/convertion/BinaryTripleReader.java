@@ -0,0 +1,144 @@
+package coc.convertion;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import coc.convertion.entity.Triple;
+
+/**
+ * Reads the triples BinaryTripleWriter writes, one at a time.
+ */
+public class BinaryTripleReader {
+	private final InputStream in;
+	private final List<String> terms = new ArrayList<String>();
+	private final List<Boolean> literal = new ArrayList<Boolean>();
+	private final Map<String, String> prefixes = new LinkedHashMap<String, String>();
+	private boolean ended = false;
+
+	public BinaryTripleReader(InputStream in) throws IOException {
+		this.in = new BufferedInputStream(in);
+		int magic = (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+		if (magic != BinaryTripleWriter.MAGIC) {
+			throw new IOException("Not a binary triple stream");
+		}
+		int version = readVarint();
+		if (version != BinaryTripleWriter.VERSION) {
+			throw new IOException("Unknown binary triple stream version " + version);
+		}
+	}
+
+	/**
+	 * @return The next triple, or null at the end of the stream
+	 */
+	public Triple next() throws IOException {
+		while (!ended) {
+			int tag = readVarint();
+			switch (tag) {
+			case BinaryTripleWriter.END:
+				ended = true;
+				break;
+			case BinaryTripleWriter.PREFIX:
+				String prefix = readString();
+				prefixes.put(prefix, readString());
+				break;
+			case BinaryTripleWriter.IRI:
+				terms.add(readString());
+				literal.add(Boolean.FALSE);
+				break;
+			case BinaryTripleWriter.LITERAL:
+				terms.add(readString());
+				literal.add(Boolean.TRUE);
+				break;
+			case BinaryTripleWriter.TRIPLE:
+				int s = readTerm();
+				int p = readTerm();
+				int o = readTerm();
+				return new Triple(terms.get(s), terms.get(p), terms.get(o), literal.get(o).booleanValue());
+			default:
+				throw new IOException("Bad record " + tag + " in binary triple stream");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read every remaining triple and close the stream.
+	 */
+	public List<Triple> readAll() throws IOException {
+		List<Triple> triples = new ArrayList<Triple>();
+		try {
+			Triple t;
+			while ((t = next()) != null) {
+				triples.add(t);
+			}
+		} finally {
+			close();
+		}
+		return triples;
+	}
+
+	/**
+	 * @return The prefixes read so far, by prefix
+	 */
+	public Map<String, String> getPrefixes() {
+		return Collections.unmodifiableMap(prefixes);
+	}
+
+	/**
+	 * @return The number of distinct IRIs and literals read so far
+	 */
+	public int getTermCount() {
+		return terms.size();
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private int readTerm() throws IOException {
+		int id = readVarint();
+		if (id >= terms.size()) {
+			throw new IOException("Undefined term " + id + " in binary triple stream");
+		}
+		return id;
+	}
+
+	private int readByte() throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("Binary triple stream is truncated");
+		}
+		return b;
+	}
+
+	private int readVarint() throws IOException {
+		int n = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = readByte();
+			n |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return n;
+			}
+		}
+		throw new IOException("Bad varint in binary triple stream");
+	}
+
+	private String readString() throws IOException {
+		byte[] bytes = new byte[readVarint()];
+		for (int off = 0; off < bytes.length;) {
+			int n = in.read(bytes, off, bytes.length - off);
+			if (n < 0) {
+				throw new EOFException("Binary triple stream is truncated");
+			}
+			off += n;
+		}
+		return new String(bytes, "UTF-8");
+	}
+}
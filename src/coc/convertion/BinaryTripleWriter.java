@@ -0,0 +1,260 @@
+package coc.convertion;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes triples in a compact binary form that BinaryTripleReader reads
+ * back: each IRI and literal is written once, the first time it is used,
+ * and is given the next id; a triple is then just three ids. Numbers are
+ * unsigned varints, seven bits to a byte, and strings are a varint byte
+ * count followed by UTF-8.
+ *
+ * <pre>
+ * stream  := MAGIC(4 bytes) VERSION record* END
+ * record  := PREFIX string(prefix) string(namespace)
+ *          | IRI string          the next term id is this IRI
+ *          | LITERAL string      the next term id is this literal
+ *          | TRIPLE varint(s) varint(p) varint(o)
+ * </pre>
+ *
+ * IRIs are written in full; PREFIX records only carry the document's
+ * prefixes, for a reader that wants to abbreviate them again.
+ */
+public class BinaryTripleWriter {
+	public static final int MAGIC = 0x43524446; // "CRDF"
+	public static final int VERSION = 1;
+
+	static final int END = 0;
+	static final int PREFIX = 1;
+	static final int IRI = 2;
+	static final int LITERAL = 3;
+	static final int TRIPLE = 4;
+
+	private final OutputStream out;
+	private final Map<String, Integer> iris = new HashMap<String, Integer>();
+	private final Map<String, Integer> literals = new HashMap<String, Integer>();
+	private final Map<String, String> prefixes = new HashMap<String, String>();
+	private int terms = 0;
+	private int triples = 0;
+
+	public BinaryTripleWriter(OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out);
+		this.out.write(MAGIC >>> 24);
+		this.out.write(MAGIC >>> 16);
+		this.out.write(MAGIC >>> 8);
+		this.out.write(MAGIC);
+		writeVarint(VERSION);
+	}
+
+	/**
+	 * Declare a prefix, such as rdf for http://www.w3.org/1999/02/22-rdf-syntax-ns#
+	 */
+	public void writePrefix(String prefix, String namespace) throws IOException {
+		prefixes.put(prefix, namespace);
+		writeVarint(PREFIX);
+		writeString(prefix);
+		writeString(namespace);
+	}
+
+	/**
+	 * @param subject The subject's full IRI
+	 * @param predicate The predicate's full IRI
+	 * @param object The object's full IRI, or the literal's text
+	 * @param literal Whether the object is a literal
+	 */
+	public void writeTriple(String subject, String predicate, String object, boolean literal) throws IOException {
+		int s = term(iris, IRI, subject);
+		int p = term(iris, IRI, predicate);
+		int o = literal ? term(literals, LITERAL, object) : term(iris, IRI, object);
+		writeVarint(TRIPLE);
+		writeVarint(s);
+		writeVarint(p);
+		writeVarint(o);
+		triples++;
+	}
+
+	private int term(Map<String, Integer> table, int kind, String value) throws IOException {
+		Integer id = table.get(value);
+		if (id == null) {
+			id = terms++;
+			table.put(value, id);
+			writeVarint(kind);
+			writeString(value);
+		}
+		return id;
+	}
+
+	/**
+	 * @return The number of distinct IRIs and literals written so far
+	 */
+	public int getTermCount() {
+		return terms;
+	}
+
+	public int getTripleCount() {
+		return triples;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * End the stream and close it.
+	 */
+	public void close() throws IOException {
+		writeVarint(END);
+		out.close();
+	}
+
+	private void writeVarint(int n) throws IOException {
+		while ((n & ~0x7f) != 0) {
+			out.write((n & 0x7f) | 0x80);
+			n >>>= 7;
+		}
+		out.write(n);
+	}
+
+	private void writeString(String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		writeVarint(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Write the triples of a document's OWL, in the order its Turtle has
+	 * them: each section's straight from convertor's facts, and Ontology.vm's
+	 * own prefixes and triples from its text. Outside its sections,
+	 * Ontology.vm may hold only prefixes, comments and one triple to a line;
+	 * any other line is thrown, not skipped.
+	 */
+	public void write(IndexedFactConvertor convertor) throws IOException {
+		IndexedFactConvertor.TripleHandler section = new SectionTriples();
+		List<String> template = TurtleWriter.getTemplate();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < template.size(); i++) {
+			String piece = template.get(i);
+			if (i % 2 == 0) {
+				text.append(piece);
+			} else if (piece.equals("version")) {
+				text.append(VelocityEngineUtils.getOWLVersionContent());
+			} else if (piece.equals("doc")) {
+				text.append(VelocityEngineUtils.getOWLFileNameContent());
+			} else if (piece.equals("datatypes")) {
+				text.append(convertor.getDataTypeScript()); // #TBD, a comment
+			} else if (piece.equals("dataprops")) {
+				writeTemplate(text);
+				convertor.writeDataPropTriples(section);
+			} else if (piece.equals("objectprops")) {
+				writeTemplate(text);
+				convertor.writeObjectPropTriples(section);
+			} else if (piece.equals("classes")) {
+				writeTemplate(text);
+				convertor.writeClassTriples(section);
+			} else if (piece.equals("individuals")) {
+				writeTemplate(text);
+				convertor.writeIndividualTriples(section);
+			} else {
+				text.append("$" + piece);
+			}
+		}
+		writeTemplate(text);
+	}
+
+	// the lines of Ontology.vm's text so far, then empty text
+	private void writeTemplate(StringBuilder text) throws IOException {
+		for (String line : text.toString().split("\n")) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#") || line.startsWith("@base")) {
+				continue;
+			}
+			// @prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .
+			String[] args = line.split("\\s+");
+			if (args.length == 4 && args[3].equals(".")) {
+				if (args[0].equals("@prefix") && args[1].endsWith(":")) {
+					writePrefix(args[1].substring(0, args[1].length() - 1), unwrap(args[2]));
+					continue;
+				} else if (!args[0].startsWith("@")) {
+					writeTerms(args[0], args[1], args[2]);
+					continue;
+				}
+			}
+			throw new IOException("Not a prefix or a triple in " + TurtleWriter.TEMPLATE + ": " + line);
+		}
+		text.setLength(0);
+	}
+
+	/*
+	 * A triple as Turtle names its terms: <iri> or prefix:name, and for the
+	 * object a quoted literal or a bare number or word too
+	 */
+	private void writeTerms(String subject, String predicate, String object) throws IOException {
+		int first = object.indexOf('"');
+		int last = object.lastIndexOf('"');
+		if (first == 0 && last > first) {
+			writeTriple(expand(subject), expand(predicate), object.substring(1, last), true);
+		} else if (object.startsWith("<") || isPrefixed(object)) {
+			writeTriple(expand(subject), expand(predicate), expand(object), false);
+		} else {
+			writeTriple(expand(subject), expand(predicate), object, true);
+		}
+	}
+
+	private boolean isPrefixed(String name) {
+		int colon = name.indexOf(':');
+		return colon >= 0 && prefixes.containsKey(name.substring(0, colon));
+	}
+
+	private String expand(String name) {
+		if (name.startsWith("<")) {
+			return unwrap(name);
+		}
+		int colon = name.indexOf(':');
+		if (colon >= 0) {
+			String namespace = prefixes.get(name.substring(0, colon));
+			if (namespace != null) {
+				return namespace + name.substring(colon + 1);
+			}
+		}
+		return name;
+	}
+
+	private static String unwrap(String iri) {
+		if (iri.startsWith("<") && iri.endsWith(">")) {
+			return iri.substring(1, iri.length() - 1);
+		}
+		return iri;
+	}
+
+	/**
+	 * Writes a section's triples. The characters TurtleWriter drops from a
+	 * section's names (#@'*`) are dropped here too; a quoted literal is kept
+	 * as it is.
+	 */
+	private class SectionTriples implements IndexedFactConvertor.TripleHandler {
+		public void triple(String subject, String predicate, String object) throws IOException {
+			writeTerms(removeSpecialChars(subject), removeSpecialChars(predicate),
+					object.startsWith("\"") ? object : removeSpecialChars(object));
+		}
+
+		private String removeSpecialChars(String name) {
+			StringBuilder sb = null;
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				if (c == '#' || c == '@' || c == '\'' || c == '*' || c == '`') {
+					if (sb == null) {
+						sb = new StringBuilder(name.substring(0, i));
+					}
+				} else if (sb != null) {
+					sb.append(c);
+				}
+			}
+			return sb == null ? name : sb.toString();
+		}
+	}
+}
@@ -12,17 +12,17 @@ import coc.agent.engine.Fact;
 import coc.convertion.entity.FactEntity;
 
 public class FactConvertor {
-	private static final String FACT_PREFIX = "_fact";
+	protected static final String FACT_PREFIX = "_fact";
 	
-	private static final String DATA_PROPS_SUFFIX = "owl:DatatypeProperty";
+	protected static final String DATA_PROPS_SUFFIX = "owl:DatatypeProperty";
 	
-	private static final String OBJECT_PROPS_SUFFIX = "owl:ObjectProperty";
+	protected static final String OBJECT_PROPS_SUFFIX = "owl:ObjectProperty";
 	
-	private static final String CLASS_SUFFIX = "owl:Class";
+	protected static final String CLASS_SUFFIX = "owl:Class";
 	
-	private static final String INDIVIDUAL_SUFFIX = "owl:NamedIndividual";
+	protected static final String INDIVIDUAL_SUFFIX = "owl:NamedIndividual";
 	
-	private static final String DATATYPES_SUFFIX = "TBD";//TODO
+	protected static final String DATATYPES_SUFFIX = "TBD";//TODO
 	
 	private Vector<Fact> enumer = null;
 	private Vector<FactEntity> allfacts = null;
@@ -34,6 +34,11 @@ public class FactConvertor {
 		this.allfacts = getAllFactsForConvert(vec);
 	}
 	
+	//the _facts being converted, in the order they were asserted
+	protected Vector<FactEntity> getFacts(){
+		return allfacts;
+	}
+	
 	//get all fact which is needed for convert to OWL
 	public Vector<FactEntity> getAllFactsForConvert(Vector v){
 		Vector<FactEntity> vec = new Vector<FactEntity>();
@@ -42,7 +47,7 @@ public class FactConvertor {
 		for (int i=0 ; i < v.size() ; i++) {
 			mfact = (Fact) v.get(i);
 			if(FACT_PREFIX.equalsIgnoreCase(mfact.getName())){
-				vec.add(new FactEntity(mfact.toStringWithParens()));
+				vec.add(new FactEntity(mfact));
 			}
 		}
 		
@@ -411,32 +416,15 @@ public class FactConvertor {
 		StringBuffer sb = new StringBuffer();
 		Sentence sen = this.getSentenceByIndivNameSuffix(individual);
 		String text = sen.getText();
-		//replace all SPACE to "_" , the last element is always punctuation, ignore it ? //TODO
-		String[] args = text.split(" ");
-		String text_name = "";
-		for(int i=0 ; i<args.length-1 ; i++){
-			if(StringUtils.isNotBlank(args[i])){
-				if("".equalsIgnoreCase(text_name)){
-					text_name = args[i];
-				}else{
-					text_name = text_name + "_"+ args[i];
-				}
-			}
-		}
-		//TODO remove punctuation . , ; 
-		text_name = StringUtils.remove(text_name, '.');
-		text_name = StringUtils.remove(text_name, ',');
-		text_name = StringUtils.remove(text_name, ';');
-		
-		text_name = parseDirtyPunctuation(text_name);
+		String slot = getSentenceSlot(sen);
 		
-		sb.append(this.verifySlot(text_name)).append(" ").append("rdf:type").append(" ").append(":__SOLUTION").append(" .");
+		sb.append(slot).append(" ").append("rdf:type").append(" ").append(":__SOLUTION").append(" .");
 		sb.append("\n");
 		
-		sb.append(this.verifySlot(text_name)).append(" ").append("rdf:type").append(" ").append("owl:NamedIndividual").append(" .");
+		sb.append(slot).append(" ").append("rdf:type").append(" ").append("owl:NamedIndividual").append(" .");
 		sb.append("\n");
 		
-		sb.append(this.verifySlot(text_name)).append(" ").append("rdfs:label").append(" ")
+		sb.append(slot).append(" ").append("rdfs:label").append(" ")
 			.append("\"")
 			.append(StringUtils.remove(String.valueOf(sen.getIndex()), '-'))
 			.append("\"")
@@ -445,7 +433,7 @@ public class FactConvertor {
 			.append(" .");
 		sb.append("\n");
 		
-		sb.append(this.verifySlot(text_name)).append(" ").append("rdfs:comment").append(" ")
+		sb.append(slot).append(" ").append("rdfs:comment").append(" ")
 		.append("\"")
 		.append(text)
 		.append("\"")
@@ -457,6 +445,34 @@ public class FactConvertor {
 		return sb.toString();
 	}
 	
+	/**
+	 * @return The individual a sentence is written as, its words joined by
+	 * '_', such as :John_is_30
+	 */
+	public String getSentenceSlot(Sentence sen){
+		String text = sen.getText();
+		//replace all SPACE to "_" , the last element is always punctuation, ignore it ? //TODO
+		String[] args = text.split(" ");
+		String text_name = "";
+		for(int i=0 ; i<args.length-1 ; i++){
+			if(StringUtils.isNotBlank(args[i])){
+				if("".equalsIgnoreCase(text_name)){
+					text_name = args[i];
+				}else{
+					text_name = text_name + "_"+ args[i];
+				}
+			}
+		}
+		//TODO remove punctuation . , ; 
+		text_name = StringUtils.remove(text_name, '.');
+		text_name = StringUtils.remove(text_name, ',');
+		text_name = StringUtils.remove(text_name, ';');
+		
+		text_name = parseDirtyPunctuation(text_name);
+		
+		return this.verifySlot(text_name);
+	}
+	
 	/**
 	 * important 
 	 * (_fact John-1x1 hasNUMBER 30-1x3)
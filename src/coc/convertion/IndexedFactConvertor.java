@@ -0,0 +1,264 @@
+package coc.convertion;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import org.apache.commons.lang.StringUtils;
+
+import co.nlu.models.Sentence;
+import coc.convertion.entity.FactEntity;
+
+/**
+ * A FactConvertor that groups the _facts once, when it is made, by category
+ * and by subject name, so each script is written in one pass over the facts
+ * instead of a scan of every fact per category and per individual. It writes
+ * exactly what FactConvertor writes.
+ * <p>
+ * A term is turned into the text written for it once per convertor, when it
+ * is first written.
+ */
+public class IndexedFactConvertor extends FactConvertor {
+	private static final Vector<FactEntity> NONE = new Vector<FactEntity>();
+
+	//lower-cased category -> facts, lower-cased subject name -> facts, each in fact order
+	private Map<String, Vector<FactEntity>> byCategory = new HashMap<String, Vector<FactEntity>>();
+	private Map<String, Vector<FactEntity>> byName = new HashMap<String, Vector<FactEntity>>();
+	//lower-cased names of the owl:DatatypeProperty facts
+	private Set<String> dataPropNames = new HashSet<String>();
+	//term -> verifySlot(term), category -> category as written for an individual
+	private Map<String, String> slots = new HashMap<String, String>();
+	private Map<String, String> categories = new HashMap<String, String>();
+
+	public IndexedFactConvertor(Vector<?> vec, Map<Integer, Sentence> sentences){
+		super(vec, sentences);
+
+		Vector<FactEntity> facts = getFacts();
+		FactEntity entity;
+		for (int i = 0 ; i < facts.size() ; i++){
+			entity = facts.get(i);
+			add(byCategory, entity.getCategory(), entity);
+			add(byName, entity.getName(), entity);
+			if(DATA_PROPS_SUFFIX.equalsIgnoreCase(entity.getCategory())){
+				dataPropNames.add(entity.getName().toLowerCase());
+			}
+		}
+	}
+
+	private static void add(Map<String, Vector<FactEntity>> index, String key, FactEntity entity){
+		key = key.toLowerCase();
+		Vector<FactEntity> vec = index.get(key);
+		if(vec == null){
+			vec = new Vector<FactEntity>();
+			index.put(key, vec);
+		}
+		vec.add(entity);
+	}
+
+	private static Vector<FactEntity> get(Map<String, Vector<FactEntity>> index, String key){
+		Vector<FactEntity> vec = index.get(key.toLowerCase());
+		return vec == null ? NONE : vec;
+	}
+
+	/**
+	 * @return The facts of a category, such as owl:Class or PERSON; the
+	 * convertor's own Vector, which must not be changed
+	 */
+	public Vector<FactEntity> getFactsByCategory(String category){
+		return get(byCategory, category);
+	}
+
+	/**
+	 * @return The facts about one subject, such as John_1x1; the convertor's
+	 * own Vector, which must not be changed
+	 */
+	public Vector<FactEntity> getFactsByName(String name){
+		return get(byName, name);
+	}
+
+	//verifySlot(..) of a term, made once
+	private String slot(String term){
+		String slot = slots.get(term);
+		if(slot == null){
+			slot = verifySlot(term);
+			slots.put(term, slot);
+		}
+		return slot;
+	}
+
+	@Override
+	public Vector<FactEntity> getAllDataTypesFacts(){
+		return getFactsByCategory(DATATYPES_SUFFIX);
+	}
+
+	@Override
+	public Vector<FactEntity> getDataTypePropFacts(){
+		return getFactsByCategory(DATA_PROPS_SUFFIX);
+	}
+
+	@Override
+	public Vector<FactEntity> getObjectPropFacts(){
+		return getFactsByCategory(OBJECT_PROPS_SUFFIX);
+	}
+
+	@Override
+	public Vector<FactEntity> getClassFacts(){
+		return getFactsByCategory(CLASS_SUFFIX);
+	}
+
+	@Override
+	public Vector<FactEntity> getNamedIndividualFacts(){
+		return getFactsByCategory(INDIVIDUAL_SUFFIX);
+	}
+
+	/*
+	 * if type is a data property, then do not append ':'
+	 *
+	 * :john-1x1 :hasAGE "5" .
+	 */
+	private String verifyIndivSlotCategory(FactEntity enti){
+		if(dataPropNames.contains(enti.getType().toLowerCase())){
+			return enti.getCategory();
+		}
+		String cat = categories.get(enti.getCategory());
+		if(cat == null){
+			cat = enti.getCategory();
+			if(cat.indexOf(":")<0){
+				cat = ":"+ cat;
+			}
+			categories.put(enti.getCategory(), cat);
+		}
+		return cat;
+	}
+
+	/**
+	 * Takes the triples of a script one at a time, each term as the script
+	 * writes it: a name such as :john_1x1 or rdf:type, or a quoted literal
+	 * such as "3".
+	 */
+	public interface TripleHandler {
+		void triple(String subject, String predicate, String object) throws IOException;
+	}
+
+	//writes each triple to out as a line of the script
+	private static TripleHandler lines(final Appendable out){
+		return new TripleHandler(){
+			public void triple(String subject, String predicate, String object) throws IOException{
+				out.append(subject).append(" ").append(predicate).append(" ").append(object).append(" .\n");
+			}
+		};
+	}
+
+	/*
+	 * :hasPERSON rdf:type owl:ObjectProperty .
+	 */
+	private void writeDeclarations(TripleHandler out, Vector<FactEntity> vec) throws IOException{
+		FactEntity current;
+		for (int i = 0 ; i < vec.size() ; i++){
+			current = vec.get(i);
+			out.triple(slot(current.getName()), slot(current.getType()), slot(current.getCategory()));
+		}
+	}
+
+	//what getObjectPropScript() returns, written to out
+	public void writeObjectPropScript(Appendable out) throws IOException{
+		writeObjectPropTriples(lines(out));
+	}
+
+	//what getDataPropScript() returns, written to out
+	public void writeDataPropScript(Appendable out) throws IOException{
+		writeDataPropTriples(lines(out));
+	}
+
+	//what getClassScript() returns, written to out
+	public void writeClassScript(Appendable out) throws IOException{
+		writeClassTriples(lines(out));
+	}
+
+	//the triples of getObjectPropScript()
+	public void writeObjectPropTriples(TripleHandler out) throws IOException{
+		writeDeclarations(out, getObjectPropFacts());
+	}
+
+	//the triples of getDataPropScript()
+	public void writeDataPropTriples(TripleHandler out) throws IOException{
+		writeDeclarations(out, getDataTypePropFacts());
+	}
+
+	//the triples of getClassScript()
+	public void writeClassTriples(TripleHandler out) throws IOException{
+		writeDeclarations(out, getClassFacts());
+	}
+
+	private void writeCombinedIndividual(TripleHandler out, String individual, Sentence sen) throws IOException{
+		Vector<FactEntity> vec = getFactsByName(individual);
+
+		FactEntity entity;
+		for(int i=0 ; i<vec.size() ; i++){
+			entity = vec.get(i);
+			out.triple(slot(entity.getName()), slot(entity.getType()), this.verifyIndivSlotCategory(entity));
+		}
+		//Add label for every individual: rdfs:label "$sentenceID" ;
+		out.triple(slot(individual), "rdfs:label", label(sen));
+	}
+
+	//"$sentenceID"
+	private static String label(Sentence sen){
+		return "\"" + StringUtils.remove(String.valueOf(sen.getIndex()), '-') + "\"";
+	}
+
+	//the triples of getLabelScript4EachSentence(..), for the sentence itself
+	private void writeSentence(TripleHandler out, Sentence sen) throws IOException{
+		String slot = getSentenceSlot(sen);
+		out.triple(slot, "rdf:type", ":__SOLUTION");
+		out.triple(slot, "rdf:type", "owl:NamedIndividual");
+		out.triple(slot, "rdfs:label", label(sen));
+		out.triple(slot, "rdfs:comment", "\"" + sen.getText() + "\"");
+	}
+
+	//what getIndividualScript() returns, written to out one individual at a time
+	public void writeIndividualScript(Appendable out) throws IOException{
+		TripleHandler lines = lines(out);
+		Set<Sentence> sens = new HashSet<Sentence>();
+		Vector<FactEntity> indivs = getNamedIndividualFacts();
+		Sentence s;
+		for (int i = 0 ; i < indivs.size() ; i++){
+			s = this.getSentenceByIndivNameSuffix(indivs.get(i).getName());
+			writeCombinedIndividual(lines, indivs.get(i).getName(), s);
+			out.append("\n");
+			if(sens.add(s)){
+				writeSentence(lines, s);
+				out.append("\n");
+			}
+		}
+	}
+
+	//the triples of getIndividualScript()
+	public void writeIndividualTriples(TripleHandler out) throws IOException{
+		Set<Sentence> sens = new HashSet<Sentence>();
+		Vector<FactEntity> indivs = getNamedIndividualFacts();
+		Sentence s;
+		for (int i = 0 ; i < indivs.size() ; i++){
+			s = this.getSentenceByIndivNameSuffix(indivs.get(i).getName());
+			writeCombinedIndividual(out, indivs.get(i).getName(), s);
+			if(sens.add(s)){
+				writeSentence(out, s);
+			}
+		}
+	}
+
+	@Override
+	public String getIndividualScript(){
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeIndividualScript(sb);
+		} catch (IOException e) {
+			//a StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,224 @@
+package coc.convertion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Writes a document's OWL, as Turtle, straight to a Writer: the text of
+ * Ontology.vm with each section streamed from an IndexedFactConvertor as it
+ * is made. Special characters are removed from each line as it passes, the
+ * way VelocityEngineUtils.convertSpecialChar removes them from a whole
+ * section, so nothing more than one line is held in memory and the output is
+ * the same, byte for byte, as the Velocity template gives.
+ * <p>
+ * Ontology.vm may use only plain references, such as $version or $classes,
+ * and no Velocity directives.
+ */
+public class TurtleWriter {
+	static final String TEMPLATE = "Ontology/input/Ontology.vm";
+
+	private static List<String> _template = null;
+
+	private final Writer out;
+
+	/**
+	 * @param out Where the OWL is written. It is not buffered here, nor
+	 * closed.
+	 */
+	public TurtleWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write the OWL for the facts convertor holds.
+	 */
+	public void write(IndexedFactConvertor convertor) throws IOException {
+		List<String> template = getTemplate();
+		for (int i = 0; i < template.size(); i++) {
+			String piece = template.get(i);
+			if (i % 2 == 0) {
+				out.write(piece);
+			} else if (piece.equals("version")) {
+				out.write(VelocityEngineUtils.getOWLVersionContent());
+			} else if (piece.equals("doc")) {
+				out.write(VelocityEngineUtils.getOWLFileNameContent());
+			} else if (piece.equals("datatypes")) {
+				out.write(convertor.getDataTypeScript()); // #TBD, so not converted
+			} else if (piece.equals("dataprops")) {
+				SectionWriter section = new SectionWriter(out);
+				convertor.writeDataPropScript(section);
+				section.finish();
+			} else if (piece.equals("objectprops")) {
+				SectionWriter section = new SectionWriter(out);
+				convertor.writeObjectPropScript(section);
+				section.finish();
+			} else if (piece.equals("classes")) {
+				SectionWriter section = new SectionWriter(out);
+				convertor.writeClassScript(section);
+				section.finish();
+			} else if (piece.equals("individuals")) {
+				SectionWriter section = new SectionWriter(out);
+				convertor.writeIndividualScript(section);
+				section.finish();
+			} else {
+				// Velocity leaves a reference it has no value for as it is
+				out.write("$" + piece);
+			}
+		}
+	}
+
+	/**
+	 * Ontology.vm split at its references: literal text at even indexes, the
+	 * name of a reference at odd ones.
+	 */
+	synchronized static List<String> getTemplate() throws IOException {
+		if (_template == null) {
+			String text = FileUtils.readFileToString(new File(TEMPLATE), "UTF-8");
+			List<String> pieces = new ArrayList<String>();
+			int start = 0;
+			int dollar = text.indexOf('$');
+			while (dollar >= 0) {
+				int end = dollar + 1;
+				if (end < text.length() && Character.isLetter(text.charAt(end))) {
+					while (end < text.length() && isIdentifierPart(text.charAt(end))) {
+						end++;
+					}
+					pieces.add(text.substring(start, dollar));
+					pieces.add(text.substring(dollar + 1, end));
+					start = end;
+				}
+				dollar = text.indexOf('$', end);
+			}
+			pieces.add(text.substring(start));
+			_template = pieces;
+		}
+		return _template;
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+	}
+
+	/**
+	 * Takes a section a piece at a time and writes it on, a line at a time,
+	 * as convertSpecialChar would: the characters #@'*` are dropped outside
+	 * the first and last double quote of each line, a blank line becomes
+	 * two, and empty lines at the end are dropped.
+	 */
+	public static class SectionWriter extends Writer {
+		private final Writer out;
+		private final StringBuilder line = new StringBuilder();
+		private int emptyLines = 0;
+		private boolean received = false;
+		private boolean finished = false;
+
+		public SectionWriter(Writer out) {
+			this.out = out;
+		}
+
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++) {
+				write(cbuf[i]);
+			}
+		}
+
+		public void write(String str, int off, int len) throws IOException {
+			int end = off + len;
+			while (off < end) {
+				received = true;
+				int nl = str.indexOf('\n', off);
+				if (nl < 0 || nl >= end) {
+					line.append(str, off, end);
+					return;
+				}
+				line.append(str, off, nl);
+				endLine();
+				off = nl + 1;
+			}
+		}
+
+		public void write(int c) throws IOException {
+			received = true;
+			if (c == '\n') {
+				endLine();
+			} else {
+				line.append((char) c);
+			}
+		}
+
+		private void endLine() throws IOException {
+			if (line.length() == 0) {
+				emptyLines++;
+				return;
+			}
+			for (; emptyLines > 0; emptyLines--) {
+				out.write("\n\n");
+			}
+			String text = line.toString();
+			if (isBlank(text)) {
+				out.write("\n");
+			} else {
+				int first = text.indexOf('"');
+				int last = text.lastIndexOf('"');
+				if (first > -1 && last > first) {
+					writeConverted(text, 0, first);
+					out.write(text, first, last + 1 - first);
+					writeConverted(text, last + 1, text.length());
+				} else {
+					writeConverted(text, 0, text.length());
+				}
+			}
+			out.write("\n");
+			line.setLength(0);
+		}
+
+		private void writeConverted(String text, int start, int end) throws IOException {
+			int from = start;
+			for (int i = start; i < end; i++) {
+				char c = text.charAt(i);
+				if (c == '#' || c == '@' || c == '\'' || c == '*' || c == '`') {
+					out.write(text, from, i - from);
+					from = i + 1;
+				}
+			}
+			out.write(text, from, end - from);
+		}
+
+		private static boolean isBlank(CharSequence s) {
+			for (int i = 0; i < s.length(); i++) {
+				if (!Character.isWhitespace(s.charAt(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Write the last line. An empty section is written as one blank line.
+		 */
+		public void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			if (line.length() > 0) {
+				endLine();
+			} else if (!received) {
+				out.write("\n\n");
+			}
+		}
+
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		public void close() throws IOException {
+			finish();
+		}
+	}
+}
@@ -1,7 +1,13 @@
 package coc.convertion;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
@@ -27,6 +33,9 @@ import coc.agent.engine.Fact;
 import coc.ruleparser.QuadConvertor;
 
 public class VelocityEngineUtils {
+	/** System property choosing what getOutputOWL writes: "turtle" (the default), "binary" or "both" */
+	public static final String OUTPUT_FORMAT_PROPERTY = "nlu.output.format";
+	
 	private static VelocityEngine velocityEngine = new VelocityEngine();
 	private static final String regEx = "[#@'*`]";
 	static {
@@ -149,7 +158,7 @@ public class VelocityEngineUtils {
 		return false;
 	}
 
-	public static void makeParent(File file) throws Exception
+	public static void makeParent(File file) throws IOException
 	{
 		File parent = file.getParentFile();
 		if(parent==null)
@@ -159,7 +168,7 @@ public class VelocityEngineUtils {
 		{
 			if(!parent.mkdirs())
 			{
-				throw new Exception("make dir [ "+parent.getAbsolutePath()+" ] fail");
+				throw new IOException("make dir [ "+parent.getAbsolutePath()+" ] fail");
 			}
 		}
 	}
@@ -178,7 +187,7 @@ public class VelocityEngineUtils {
 	}
 	
 	public static Map getInputMap(Vector vec, Map<Integer, Sentence> sentenceMap){
-		FactConvertor convertor = new FactConvertor(vec, sentenceMap);
+		FactConvertor convertor = new IndexedFactConvertor(vec, sentenceMap);
 		Map map = new HashMap();
 		
 		map.put("version", getOWLVersionContent());
@@ -193,26 +202,141 @@ public class VelocityEngineUtils {
 	}
 	
 	public static void getOutputOWL(Vector vec, Map<Integer, Sentence> sentenceMap){
+		getOutputOWL(vec, sentenceMap, "Ontology/output/" + getOWLFileNameContent());
+	}
+
+	/**
+	 * Write the OWL for the facts to saveFilePath as Turtle, and/or to
+	 * getBinaryPath(saveFilePath) as binary triples, as the system property
+	 * nlu.output.format says. A failure is printed, not thrown.
+	 */
+	public static void getOutputOWL(Vector<?> vec, Map<Integer, Sentence> sentenceMap, String saveFilePath){
 		try {
-			Map map = getInputMap(vec, sentenceMap);
-			mergeTemplateIntoSaveFile("Ontology.vm", map, "Ontology/output/" + getOWLFileNameContent(), "UTF-8", false);
+			writeOutputOWL(vec, sentenceMap, saveFilePath);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * As getOutputOWL(vec, sentenceMap, saveFilePath), but a file that can't
+	 * be made or written is thrown.
+	 */
+	public static void writeOutputOWL(Vector<?> vec, Map<Integer, Sentence> sentenceMap, String saveFilePath) throws IOException{
+		String format = System.getProperty(OUTPUT_FORMAT_PROPERTY, "turtle");
+		if (!"binary".equalsIgnoreCase(format)) {
+			File file = new File(saveFilePath);
+			if (!file.exists()) {
+				makeParent(file);
+			}
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			try {
+				writeOWL(vec, sentenceMap, out);
+			} finally {
+				out.close();
+			}
+		}
+		if ("binary".equalsIgnoreCase(format) || "both".equalsIgnoreCase(format)) {
+			File file = new File(getBinaryPath(saveFilePath));
+			if (!file.exists()) {
+				makeParent(file);
+			}
+			OutputStream out = new FileOutputStream(file);
+			try {
+				writeBinaryOWL(vec, sentenceMap, out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+	
+	/**
+	 * @return Where the binary triples for an OWL file go: its path with
+	 * .rdfb for .owl
+	 */
+	public static String getBinaryPath(String owlPath){
+		if (owlPath.toLowerCase().endsWith(".owl")) {
+			owlPath = owlPath.substring(0, owlPath.length() - 4);
+		}
+		return owlPath + ".rdfb";
+	}
+	
+	/**
+	 * Write the triples of the OWL for the facts to out, in the form
+	 * BinaryTripleReader reads, and close it.
+	 */
+	public static void writeBinaryOWL(Vector<?> vec, Map<Integer, Sentence> sentenceMap, OutputStream out) throws IOException{
+		BinaryTripleWriter triples = new BinaryTripleWriter(out);
+		try {
+			triples.write(new IndexedFactConvertor(vec, sentenceMap));
+		} finally {
+			triples.close();
+		}
+	}
 	
 	public static String getOutputOWLContent(Vector vec, Map<Integer, Sentence> sentenceMap){
-		String owlcontent = null;
 		try {
-			Map map = getInputMap(vec, sentenceMap);
-			owlcontent =mergeTemplateIntoString("Ontology.vm", map);
-			return owlcontent;
+			StringWriter writer = new StringWriter();
+			writeOWL(vec, sentenceMap, writer);
+			return writer.toString();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return "";
 	}
 	
+	/**
+	 * Write the OWL for the facts to out as it is made, without building it
+	 * in memory first. It is what merging getInputMap(..) into Ontology.vm
+	 * gives.
+	 */
+	public static void writeOWL(Vector<?> vec, Map<Integer, Sentence> sentenceMap, Writer out) throws IOException{
+		new TurtleWriter(out).write(new IndexedFactConvertor(vec, sentenceMap));
+		out.flush();
+	}
+	
+	/**
+	 * The head of an OWL document for incremental output: Ontology.vm with
+	 * every generated section empty. The triples from
+	 * getSentenceOWLContent(..) can be appended to it as they are made.
+	 */
+	public static String getOWLHeaderContent(){
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("version", getOWLVersionContent());
+		map.put("doc", getOWLFileNameContent());
+		map.put("datatypes", "#TBD");
+		map.put("dataprops", "");
+		map.put("objectprops", "");
+		map.put("classes", "");
+		map.put("individuals", "");
+		return mergeTemplateIntoString("Ontology.vm", map);
+	}
+
+	/**
+	 * The triples for one sentence, to follow getOWLHeaderContent().
+	 * @param declarations the _fact class and property declarations first made
+	 * by this sentence
+	 * @param facts every declaration so far and this sentence's other _facts
+	 * @param sentenceMap the sentence the facts came from
+	 */
+	public static String getSentenceOWLContent(Vector<Fact> declarations, Vector<Fact> facts, Map<Integer, Sentence> sentenceMap){
+		StringBuilder sb = new StringBuilder();
+		if (!declarations.isEmpty()) {
+			FactConvertor declared = new IndexedFactConvertor(declarations, sentenceMap);
+			appendSection(sb, declared.getObjectPropScript());
+			appendSection(sb, declared.getDataPropScript());
+			appendSection(sb, declared.getClassScript());
+		}
+		appendSection(sb, new IndexedFactConvertor(facts, sentenceMap).getIndividualScript());
+		return sb.toString();
+	}
+
+	private static void appendSection(StringBuilder sb, String script){
+		if (StringUtils.isNotBlank(script)) {
+			sb.append(convertSpecialChar(script));
+		}
+	}
+	
 	public static Map getQuadInputMap(){
 		QuadConvertor convertor = new QuadConvertor();
 		Map map = new HashMap();
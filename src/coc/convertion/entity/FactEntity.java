@@ -2,6 +2,12 @@ package coc.convertion.entity;
 
 import org.apache.commons.lang.StringUtils;
 
+import coc.agent.engine.Fact;
+import coc.agent.engine.RU;
+import coc.agent.engine.ReteException;
+import coc.agent.engine.Value;
+import coc.agent.engine.ValueVector;
+
 public class FactEntity {
 	//Example: (_fact John-1x1 rdf:type owl:NamedIndividual)
 	private String prefix;//_fact
@@ -10,6 +16,62 @@ public class FactEntity {
 	private String category;//owl:NamedIndividual
 	
 	public FactEntity(String fact){
+		parse(fact);
+	}
+	
+	/*
+	 * Read straight from the fact's slots, with no printing and parsing: an
+	 * atom's String is taken as it is, so rule symbols such as rdf:type stay
+	 * shared. A fact whose first three values would not print as one word
+	 * each is parsed from its printed form instead, so this is always what
+	 * FactEntity(fact.toStringWithParens()) gives.
+	 */
+	public FactEntity(Fact fact){
+		try {
+			Value data = fact.get(0);
+			if(data.type() == RU.LIST && fact.getName().indexOf(' ') < 0){
+				ValueVector values = data.listValue(null);
+				if(values.size() >= 3){
+					String n = text(values.get(0), false);
+					String t = text(values.get(1), false);
+					String c = text(values.get(2), true);
+					if(n != null && t != null && c != null){
+						this.prefix = fact.getName();
+						this.name = n;
+						this.type = t;
+						this.category = c;
+						return;
+					}
+				}
+			}
+		} catch (ReteException e) {
+			//parse it instead
+		}
+		parse(fact.toStringWithParens());
+	}
+	
+	//a value's printed text, or null if it does not print as one word
+	private static String text(Value value, boolean last) throws ReteException{
+		String text;
+		switch (value.type()) {
+		case RU.ATOM:
+			text = value.atomValue(null);
+			break;
+		case RU.STRING:
+		case RU.INTEGER:
+		case RU.FLOAT:
+			text = value.toString();
+			break;
+		default:
+			return null;
+		}
+		if(text.length() == 0 || text.indexOf(' ') >= 0 || (last && text.indexOf(')') >= 0)){
+			return null;
+		}
+		return text;
+	}
+	
+	private void parse(String fact){
 		String[] args = fact.split(" ");
 		this.prefix = args[0];
 		this.name = args[1];
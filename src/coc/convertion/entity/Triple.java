@@ -0,0 +1,43 @@
+package coc.convertion.entity;
+
+public class Triple {
+	//Example: <...#John_1x1> <...rdf-syntax-ns#type> <...owl#NamedIndividual>
+	private String subject;
+	private String predicate;
+	private String object;
+	private boolean literal;//whether object is a literal rather than an IRI
+
+	public Triple(String subject, String predicate, String object, boolean literal){
+		this.subject = subject;
+		this.predicate = predicate;
+		this.object = object;
+		this.literal = literal;
+	}
+
+	public String getSubject() {
+		return subject;
+	}
+	public String getPredicate() {
+		return predicate;
+	}
+	public String getObject() {
+		return object;
+	}
+	public boolean isLiteral() {
+		return literal;
+	}
+
+	//N-Triples style: <s> <p> <o> . or <s> <p> "o" .
+	public String toString(){
+		StringBuilder sb = new StringBuilder();
+		sb.append("<").append(subject).append("> <").append(predicate).append("> ");
+		if(literal){
+			sb.append("\"").append(object).append("\"");
+		}else{
+			sb.append("<").append(object).append(">");
+		}
+		sb.append(" .");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,178 @@
+package coc.ws.nlu;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.nlu.utils.Log;
+
+/**
+ * Runs web-service requests off the caller's thread, each on a thread of its
+ * own: a virtual thread where the runtime has them, otherwise a pooled
+ * daemon thread. At most maxInFlight requests run at once; any more are
+ * refused straight away. A request still running after the timeout is
+ * failed with a TimeoutException and told to stop.
+ */
+public class RequestExecutor {
+	/** System property holding the most requests the shared executor runs at once */
+	public static final String MAX_IN_FLIGHT_PROPERTY = "nlu.ws.maxinflight";
+
+	/** System property holding the shared executor's request timeout, in milliseconds */
+	public static final String TIMEOUT_PROPERTY = "nlu.ws.timeout";
+
+	private static RequestExecutor _shared = null;
+
+	private final int maxInFlight;
+	private final long timeout;
+	private final Semaphore permits;
+	private final ExecutorService workers;
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * @param maxInFlight The most requests to run at once
+	 * @param timeout How long a request may run, in milliseconds
+	 */
+	public RequestExecutor(int maxInFlight, long timeout) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("Requests in flight must be at least 1: " + maxInFlight);
+		}
+		this.maxInFlight = maxInFlight;
+		this.timeout = timeout;
+		this.permits = new Semaphore(maxInFlight);
+		this.workers = newWorkers();
+		this.timer = Executors.newSingleThreadScheduledExecutor(new Daemons("nlu-request-timer-"));
+	}
+
+	/**
+	 * The executor behind WSProcessor.process2Async. It runs the system property
+	 * nlu.ws.maxinflight requests at once (four per processor by default) and
+	 * times them out after nlu.ws.timeout milliseconds (30 seconds by default).
+	 */
+	public synchronized static RequestExecutor shared() {
+		if (_shared == null) {
+			_shared = new RequestExecutor(
+					Integer.getInteger(MAX_IN_FLIGHT_PROPERTY, 4 * Runtime.getRuntime().availableProcessors()),
+					Long.getLong(TIMEOUT_PROPERTY, 30000L));
+		}
+		return _shared;
+	}
+
+	/**
+	 * Start a request.
+	 * @param task The request
+	 * @param onTimeout Run, on the timer thread, if the request is still
+	 * running when it times out; it should make the request stop
+	 * @return The request's result. It fails at once with a
+	 * RejectedExecutionException if maxInFlight requests are already running,
+	 * or with a TimeoutException if the request runs too long, once onTimeout
+	 * has run.
+	 */
+	public <T> CompletableFuture<T> submit(final Callable<T> task, final Runnable onTimeout) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		if (!permits.tryAcquire()) {
+			result.completeExceptionally(new RejectedExecutionException("Too many requests in flight: " + maxInFlight));
+			return result;
+		}
+
+		// whichever of the request and its timeout comes first settles the result
+		final AtomicBoolean settled = new AtomicBoolean(false);
+		final ScheduledFuture<?> timing = timer.schedule(new Runnable() {
+			public void run() {
+				if (settled.compareAndSet(false, true)) {
+					try {
+						onTimeout.run();
+					} catch (RuntimeException e) {
+						Log.error("Failed to stop a timed-out request", e);
+					} finally {
+						result.completeExceptionally(new TimeoutException("Request took over " + timeout + " ms"));
+					}
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+
+		try {
+			workers.execute(new Runnable() {
+				public void run() {
+					try {
+						T value = task.call();
+						if (settled.compareAndSet(false, true)) {
+							result.complete(value);
+						}
+					} catch (Throwable t) {
+						if (settled.compareAndSet(false, true)) {
+							result.completeExceptionally(t);
+						}
+					} finally {
+						// the permit is held until the work has really stopped
+						timing.cancel(false);
+						permits.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			timing.cancel(false);
+			permits.release();
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Stop taking requests. Those already running carry on.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+		timer.shutdown();
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return The number of requests running now
+	 */
+	public int getInFlight() {
+		return maxInFlight - permits.availablePermits();
+	}
+
+	// Virtual threads need Java 21; the code is built for older runtimes too
+	private static ExecutorService newWorkers() {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (Exception e) {
+			return Executors.newCachedThreadPool(new Daemons("nlu-request-"));
+		}
+	}
+
+	private static class Daemons implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		Daemons(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
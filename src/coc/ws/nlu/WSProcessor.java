@@ -1,40 +1,77 @@
 package coc.ws.nlu;
 
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Formatter;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.Vector;
 
 import org.apache.commons.lang.StringUtils;
 
 import coc.Agent;
+import coc.AgentPool;
 import coc.agent.engine.Fact;
+import coc.agent.engine.ReteException;
 import coc.convertion.VelocityEngineUtils;
 
 import co.nlu.models.Dep;
 import co.nlu.models.Sentence;
 import co.nlu.models.Token;
+import co.nlu.process.CoreNLPReader;
 import co.nlu.process.Processor;
 import co.nlu.utils.Log;
-import co.nlu.utils.XMLElement;
 
 public class WSProcessor extends Processor{
+	private final RequestExecutor executor;
+
+	public WSProcessor() {
+		this(null);
+	}
+
+	/**
+	 * @param executor What process2Async runs requests on, or null for the
+	 * shared RequestExecutor
+	 */
+	public WSProcessor(RequestExecutor executor) {
+		this.executor = executor;
+	}
 	
 	public String process2(String text) {
+		return process2(text, null);
+	}
+
+	/**
+	 * Run process2 on a thread of the RequestExecutor. The result fails
+	 * at once if too many requests are in flight, and with a TimeoutException
+	 * if the request runs too long, in which case its inference is halted.
+	 */
+	public CompletableFuture<String> process2Async(final String text) {
+		final Request request = new Request();
+		RequestExecutor requests = executor != null ? executor : RequestExecutor.shared();
+		return requests.submit(new Callable<String>() {
+			public String call() {
+				return process2(text, request);
+			}
+		}, new Runnable() {
+			public void run() {
+				request.timeout();
+			}
+		});
+	}
+
+	private String process2(String text, Request request) {
 		String owlcontent = null;
-		XMLElement el = null;
-		Map<Integer, Sentence> setnsRet = new HashMap<Integer, Sentence>();
+		Map<Integer, Sentence> setnsRet = null;
 		
 		try{
 			if (StringUtils.isNotBlank(text)) {
 				Log.debug("Start to process input");
-				el = XMLElement.parseXML(text);
-				setnsRet = parseSentences(el);
-				owlcontent = generateFacts(setnsRet);
+				setnsRet = new CoreNLPReader(new StringReader(text)).readAll();
+				owlcontent = generateFacts(setnsRet, request);
 				setnsRet.clear();
 				
 				return owlcontent;
@@ -47,43 +84,90 @@ public class WSProcessor extends Processor{
 		return "";
 	}
 	
-	private String generateFacts(Map<Integer, Sentence> setnsRet) {
+	private String generateFacts(Map<Integer, Sentence> setnsRet, Request request) throws InterruptedException,
+			ReteException {
+		AgentPool pool = AgentPool.shared();
+		Agent agent = pool.borrow();
+		try {
+			if (request != null && !request.start(agent)) {
+				return "";
+			}
+			try {
+				return generateFacts(setnsRet, agent, request);
+			} finally {
+				if (request != null) {
+					request.finish();
+				}
+			}
+		} finally {
+			pool.release(agent);
+		}
+	}
+
+	/**
+	 * The Agent an async request is running on, so that a timeout can halt
+	 * it, but never once it has gone back to the pool; and whether it has
+	 * timed out, so that inference is not started after it has.
+	 */
+	private static class Request {
+		private Agent agent = null;
+		private boolean timedOut = false;
+
+		synchronized boolean start(Agent agent) {
+			if (timedOut) {
+				return false;
+			}
+			this.agent = agent;
+			return true;
+		}
+
+		synchronized void finish() {
+			agent = null;
+		}
+
+		synchronized boolean isCancelled() {
+			return timedOut;
+		}
+
+		synchronized void timeout() {
+			timedOut = true;
+			if (agent != null) {
+				agent.clear();
+			}
+		}
+	}
+
+	private String generateFacts(Map<Integer, Sentence> setnsRet, Agent agent, Request request) {
 		String owlcontent = null;
-		Agent agent = new Agent();
 		Log.debug("Start to genearte facts");
-		StringBuilder sb = new StringBuilder();
-		String[] factslist;
-		Sentence stnc;
-		Formatter formatter = new Formatter(sb, Locale.US);
-		for (Object skey : setnsRet.keySet()) {
-			stnc = setnsRet.get(skey);
-			for(Object tkey : stnc.getTokenRet().keySet()){
-				Token tk = (Token)stnc.getTokenRet().get(tkey);
-				if(tk.getPos().length()!=1){
-					formatter.format("(%s %s-%sx%s %s)", "_pos", tk.getWord(),stnc.getIndex(),tk.getId(),tk.getPos());
-					sb.append("\n");
+		List<Fact> facts = new ArrayList<Fact>();
+		try {
+			for (Object skey : setnsRet.keySet()) {
+				Sentence stnc = setnsRet.get(skey);
+				String sx = "_" + stnc.getIndex() + "x";
+				for (Object tkey : stnc.getTokenRet().keySet()) {
+					Token tk = (Token) stnc.getTokenRet().get(tkey);
+					String name = tk.getWord() + sx + tk.getId();
+					if (tk.getPos().length() != 1) {
+						facts.add(agent.newOrdered("_pos", name, tk.getPos()));
+					}
+					if (tk.getNer().equals("O"))
+						continue;
+					facts.add(agent.newOrdered("ner", name, tk.getNer()));
+				}
+				List depList = stnc.getDepRet();
+				for (Iterator it = depList.iterator(); it.hasNext();) {
+					Dep dep = (Dep) it.next();
+					facts.add(agent.newOrdered("_td", dep.getDep(), dep.getGov().getValue() + sx + dep.getGov().getIdx(),
+							dep.getDepend().getValue() + sx + dep.getDepend().getIdx()));
 				}
-				if(tk.getNer().equals("O"))
-					continue;
-				formatter.format("(%s %s-%sx%s %s)", "ner", tk.getWord(),stnc.getIndex(),tk.getId(),tk.getNer());
-				sb.append("\n");
-				
-			}
-			List depList = stnc.getDepRet();
-			for(Iterator it = depList.iterator();it.hasNext();){
-				Dep dep = (Dep) it.next();
-				formatter.format("(_td %s %s-%sx%s %s-%sx%s)",dep.getDep(),dep.getGov().getValue(),stnc.getIndex(),dep.getGov().getIdx(),
-						dep.getDepend().getValue(), stnc.getIndex(),dep.getDepend().getIdx());
-				sb.append("\n");
 			}
-//			stnc.clear();
+		} catch (ReteException re) {
+			Log.error("Failed to build facts: " + re.getMessage());
 		}
-		
-		System.out.println(sb);
-		factslist = sb.toString().split("\\n");
-		for(int i = 0; i<factslist.length;i++){
-			agent.assertFact(factslist[i]);
-			Log.debug("Assert fact: "+factslist[i]);
+		agent.assertAll(facts);
+		if (request != null && request.isCancelled()) {
+			return "";
 		}
 
 		agent.inference();